@@ -0,0 +1,80 @@
+package jp.sys_link.labyrinth;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jp.sys_link.labyrinth.core.AccelerationFilter;
+import jp.sys_link.labyrinth.core.SampleRingBuffer;
+
+// 加速度センサーのサンプルを時刻つきでリングバッファにためておき、物理計算のたびにまとめてフィルタへ渡す
+// onSensorChangedではバッファに書き込むだけにして、フィルタの計算は描画スレッドで行う
+class AccelerometerInput implements SensorEventListener {
+
+    // サンプリング間隔(マイクロ秒)。SENSOR_DELAY_GAMEと同じ
+    private static final int SAMPLING_PERIOD_US = 20000;
+
+    // バッチ処理ができる端末で、サンプルをまとめて通知してよい遅れ(マイクロ秒)
+    // 物理計算１回分までにして、操作の遅れが目立たないようにする
+    private static final int MAX_REPORT_LATENCY_US = 20000;
+
+    // バッチ処理でまとめて届いても溢れない大きさ
+    private static final int BUFFER_CAPACITY = 256;
+
+    private final SensorManager sensorManager;
+
+    private final SampleRingBuffer samples = new SampleRingBuffer(BUFFER_CAPACITY);
+
+    // センサーを開始し直したので、古いサンプルとフィルタの途中の値を捨てる必要があるか
+    private final AtomicBoolean isResetRequested = new AtomicBoolean(true);
+
+    AccelerometerInput(Context context) {
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+    }
+
+    // 加速度センサーの開始
+    void start() {
+        isResetRequested.set(true);
+
+        Sensor accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if (accelerometer == null) {
+            // 加速度センサーのない端末やエミュレータでは、ボールを動かさない
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && accelerometer.getFifoMaxEventCount() > 0) {
+            // センサーのFIFOにためてまとめて通知してもらい、CPUを起こす回数を減らす
+            sensorManager.registerListener(this, accelerometer, SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US);
+        } else {
+            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
+        }
+    }
+
+    // 加速度センサーの停止
+    void stop() {
+        sensorManager.unregisterListener(this);
+    }
+
+    // 描画スレッドから呼ぶ。前回から届いたサンプルを古い順にfilterへ渡し、渡した数を返す
+    int drainTo(AccelerationFilter filter) {
+        if (isResetRequested.getAndSet(false)) {
+            samples.clear();
+            filter.reset();
+        }
+        return samples.drainTo(filter);
+    }
+
+    @Override
+    // 加速度センサーの値は、SensorEventListenerのonSensorChangedメソッドで受け取る
+    public void onSensorChanged(SensorEvent event) {
+        samples.offer(event.timestamp, event.values[0], event.values[1]);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
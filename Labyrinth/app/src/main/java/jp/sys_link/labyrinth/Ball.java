@@ -1,92 +1,63 @@
 package jp.sys_link.labyrinth;
 
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.Rect;
 
-public class Ball {
-
-    private static final Paint PAINT = new Paint();
+import jp.sys_link.labyrinth.core.BallBody;
 
-    private Bitmap ballBitmap;
+// ボールの描画を行う。位置と移動はBallBodyが扱う
+public class Ball {
 
-    private final Rect rect;
-    private final Rect srcRect;
+    // 表示する大きさに縮小しておいた画像。描画するときに拡大縮小しない
+    private final Bitmap ballBitmap;
 
-    // ボールが希望する位置に動くことができるか(壁にぶつからないか)を判定する
-    public interface OnMoveListener {
-        public boolean canMove(int left, int top, int right, int bottom);
-    }
+    private final BallBody body;
 
-    private OnMoveListener listener;
+    // 補間した描画位置
+    private final Rect drawRect = new Rect();
 
-    public Ball(Bitmap bmp, Map.Block startBlock, float scale) {
-        this(bmp, startBlock.rect.left, startBlock.rect.top, scale);
+    public Ball(Bitmap sprite, Map map) {
+        this(sprite, map.getStartLeft(), map.getStartTop());
     }
 
-    public void setOnMoveListener(OnMoveListener l) {
-        listener = l;
+    public void setOnMoveListener(BallBody.OnMoveListener l) {
+        body.setOnMoveListener(l);
     }
 
-    public Ball(Bitmap bmp, int left, int top, float scale) {
-        ballBitmap = bmp;
+    // ボールの大きさは画像の大きさと同じにする
+    public Ball(Bitmap sprite, int left, int top) {
+        ballBitmap = sprite;
 
-        int right = left + Math.round(bmp.getWidth() * scale);
-        int bottom = top + Math.round(bmp.getHeight() * scale);
-        rect = new Rect(left, top, right, bottom);
-
-        // srcRectに、画像ファイルの大きさそのままの座標を設定する
-        srcRect = new Rect(0, 0, bmp.getWidth(), bmp.getHeight());
+        body = new BallBody(left, top, sprite.getWidth(), sprite.getHeight());
     }
 
-    void draw(Canvas canvas) {
-        canvas.drawBitmap(ballBitmap, srcRect, rect, PAINT);
+    // alphaは直前の物理計算から次の物理計算までの進み具合(0〜1)
+    void draw(Renderer renderer, float alpha) {
+        int left = getDrawLeft(alpha);
+        int top = getDrawTop(alpha);
+        drawRect.set(left, top, left + body.getWidth(), top + body.getHeight());
+        renderer.drawBall(ballBitmap, drawRect);
 
     }
 
-    // moveメソッドでボールの位置を変更する
-    void move(float xOffset, float yOffset) {
-
-        int align = yOffset >= 0 ? 1 : -1;
-        while (!tryMoveVertical(yOffset)) {
-            yOffset -= align;
-        }
-
-        align = xOffset >= 0 ? 1 : -1;
-        while (!tryMoveHorizontal(xOffset)) {
-            xOffset -= align;
-        }
+    int getWidth() {
+        return body.getWidth();
     }
 
-    // canMoveでそれぞれの方向に移動できるかを試行する
-    // 試行した移動量では特定の方向に動けない場合、移動量を
-    // 減らしながら移動できるまで繰り返す
-    private boolean tryMoveHorizontal(float xOffset) {
-        int left = rect.left + Math.round(xOffset);
-        int right = left + rect.width();
-
-        if (!listener.canMove(left, rect.top, right, rect.bottom)) {
-            return false;
-        }
-
-        rect.left = left;
-        rect.right = right;
-        return true;
+    int getHeight() {
+        return body.getHeight();
     }
 
-    private boolean tryMoveVertical(float yOffset) {
-        int top = rect.top + Math.round(yOffset);
-        int bottom = top + rect.height();
-
-        if (!listener.canMove(rect.left, top, rect.right, bottom)) {
-            return false;
-        }
-
-        rect.top = top;
-        rect.bottom = bottom;
-        return true;
+    int getDrawLeft(float alpha) {
+        return body.getDrawLeft(alpha);
     }
 
+    int getDrawTop(float alpha) {
+        return body.getDrawTop(alpha);
+    }
 
+    // ボールの位置と移動。Physics.stepで動かす
+    BallBody getBody() {
+        return body;
+    }
 }
@@ -0,0 +1,101 @@
+package jp.sys_link.labyrinth;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+// ボールの画像を、表示する大きさに一度だけ縮小して持っておく
+// 画面の密度に合わせて拡大した元の画像を毎フレーム縮小して描かずに済み、デコードした画像のメモリも小さくなる
+class BallSprite {
+
+    // ブロックの大きさ(px)。画面の密度に合わせて拡大したときのボールの画像の高さ
+    private final int blockSize;
+
+    private final Bitmap bitmap;
+
+    private BallSprite(int blockSize, Bitmap bitmap) {
+        this.blockSize = blockSize;
+        this.bitmap = bitmap;
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    // ブロックの大きさにscaleを掛けた大きさの画像
+    Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    // 画像をデコードして、ブロックの大きさにscaleを掛けた大きさにする
+    // デコードに使うBitmapは、poolにあれば使い回し、縮小したあとはpoolに返す
+    static BallSprite decode(Resources resources, int id, float scale, BitmapPool pool) {
+        // 元の画像の大きさだけを読む
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, id, options);
+        int rawWidth = options.outWidth;
+        int rawHeight = options.outHeight;
+
+        // ブロックの大きさはリプレイにも記録するので、以前のdecodeResourceが密度に合わせて拡大した大きさと
+        // 同じ計算で求める
+        TypedValue value = new TypedValue();
+        resources.getValue(id, value, true);
+        float densityScale = densityScale(value.density, resources.getDisplayMetrics().densityDpi);
+        int blockWidth = (int) (rawWidth * densityScale + 0.5f);
+        int blockSize = (int) (rawHeight * densityScale + 0.5f);
+
+        int spriteWidth = Math.round(blockWidth * scale);
+        int spriteHeight = Math.round(blockSize * scale);
+
+        // 表示する大きさを下回らない範囲で、２のべき乗で間引いてデコードする
+        int sampleSize = 1;
+        while (rawWidth / (sampleSize * 2) >= spriteWidth && rawHeight / (sampleSize * 2) >= spriteHeight) {
+            sampleSize *= 2;
+        }
+
+        options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inSampleSize = sampleSize;
+        // ボールの周りは透明なので、アルファのないRGB_565は使えない
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        // 使い回せるように、書き換えられるBitmapにする
+        options.inMutable = true;
+        // KitKatより前は、間引かずに同じ大きさでデコードするときだけ使い回せる
+        if (sampleSize == 1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            options.inBitmap = pool.take(rawWidth / sampleSize, rawHeight / sampleSize, Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeResource(resources, id, options);
+        } catch (IllegalArgumentException e) {
+            // 使い回すBitmapに収まらなかったときは、新しく作る
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeResource(resources, id, options);
+        }
+
+        if (decoded.getWidth() == spriteWidth && decoded.getHeight() == spriteHeight) {
+            return new BallSprite(blockSize, decoded);
+        }
+        Bitmap sprite = Bitmap.createScaledBitmap(decoded, spriteWidth, spriteHeight, true);
+        pool.put(decoded);
+        return new BallSprite(blockSize, sprite);
+    }
+
+    // リソースの密度から画面の密度への拡大率。BitmapFactory.decodeResourceと同じく決める
+    private static float densityScale(int resourceDensity, int targetDensity) {
+        if (resourceDensity == TypedValue.DENSITY_NONE || targetDensity == 0) {
+            return 1f;
+        }
+        if (resourceDensity == TypedValue.DENSITY_DEFAULT) {
+            resourceDensity = DisplayMetrics.DENSITY_DEFAULT;
+        }
+        return (float) targetDensity / resourceDensity;
+    }
+}
@@ -0,0 +1,76 @@
+package jp.sys_link.labyrinth;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+
+// 使い終わったBitmapを取っておき、同じ大きさと形式のBitmapが必要になったときに使い回す
+// ステージを切り替えるたびに作り直していたマップのキャッシュや、ボールの画像のデコード先に使う
+// Activityを作り直しても使えるように、プロセスで１つだけ作る。描画スレッドとUIスレッドから使うので同期する
+class BitmapPool {
+
+    // 取っておくBitmapの合計の大きさ。ヒープの1/8まで
+    private static final long MAX_BYTES = Runtime.getRuntime().maxMemory() / 8;
+
+    private static BitmapPool instance;
+
+    static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool();
+        }
+        return instance;
+    }
+
+    // 古いものから順に並べる
+    private final ArrayList<Bitmap> bitmaps = new ArrayList<Bitmap>();
+    private long bytes;
+
+    // 同じ大きさと形式のBitmapがあれば取り出し、なければ作る。中身は消えていないことがある
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, config);
+    }
+
+    // 同じ大きさと形式のBitmapがあれば取り出す。なければnull
+    // BitmapFactory.Options.inBitmapに渡して、デコード先に使う
+    synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+        for (int i = bitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = bitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                bitmaps.remove(i);
+                bytes -= bitmap.getByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    // 使い終わったBitmapを返す。書き換えられないBitmapは使い回せないので、そのまま解放する
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getByteCount() > MAX_BYTES) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.add(bitmap);
+        bytes += bitmap.getByteCount();
+
+        // 入りきらなければ、古いものから解放する
+        while (bytes > MAX_BYTES) {
+            Bitmap eldest = bitmaps.remove(0);
+            bytes -= eldest.getByteCount();
+            eldest.recycle();
+        }
+    }
+
+    // メモリが足りなくなったときに、取っておいたBitmapをすべて解放する
+    synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        bytes = 0;
+    }
+}
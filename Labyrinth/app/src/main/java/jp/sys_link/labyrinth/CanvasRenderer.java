@@ -0,0 +1,63 @@
+package jp.sys_link.labyrinth;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+// SurfaceViewからロックしたCanvasに描画するRenderer
+// ロックした範囲の外は前のフレームのまま残るので、Canvasのクリップに重なる部分だけを描画する
+class CanvasRenderer implements Renderer {
+
+    private static final Paint BALL_PAINT = new Paint();
+
+    private Canvas canvas;
+
+    private int cameraX;
+    private int cameraY;
+
+    // 描画する範囲(迷路の座標系)と、画面の座標系にずらしたボールの矩形。描画スレッドだけが使う
+    private final Rect viewport = new Rect();
+    private final Rect ballRect = new Rect();
+
+    // lockCanvasで受け取ったCanvasを、フレームごとに設定する
+    void setCanvas(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    @Override
+    public void setCamera(int cameraX, int cameraY) {
+        this.cameraX = cameraX;
+        this.cameraY = cameraY;
+    }
+
+    @Override
+    public void drawMap(Map map) {
+        canvas.save();
+        canvas.translate(-cameraX, -cameraY);
+
+        // ロックされた範囲は要求より広がることがあるので、canvasのクリップから求める
+        if (!canvas.getClipBounds(viewport)) {
+            viewport.set(cameraX, cameraY, cameraX + canvas.getWidth(), cameraY + canvas.getHeight());
+        }
+        map.drawMap(canvas, viewport);
+        canvas.restore();
+    }
+
+    @Override
+    public void drawBall(Bitmap bitmap, Rect rect) {
+        // 画像が描く大きさと同じなら、拡大縮小せずにそのまま転送する
+        if (bitmap.getWidth() == rect.width() && bitmap.getHeight() == rect.height()) {
+            canvas.drawBitmap(bitmap, rect.left - cameraX, rect.top - cameraY, BALL_PAINT);
+            return;
+        }
+        ballRect.set(rect);
+        ballRect.offset(-cameraX, -cameraY);
+        canvas.drawBitmap(bitmap, null, ballRect, BALL_PAINT);
+    }
+
+    @Override
+    public void drawText(char[] text, int count, int x, int y, Paint paint) {
+        canvas.drawText(text, 0, count, x, y, paint);
+    }
+}
@@ -0,0 +1,377 @@
+package jp.sys_link.labyrinth;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import jp.sys_link.labyrinth.core.BlockSource;
+
+// OpenGL ES 2.0で描画するRenderer。GLスレッドだけから呼ぶ
+// 迷路はブロック１つを１テクセルにしたテクスチャにして一度だけ転送し、タイルごとに四角形１枚で描く
+// ボールと経過時間などの文字列も、テクスチャを貼った四角形１枚で描く
+class GLRenderer implements Renderer {
+
+    // テクスチャ１枚に入れる縦横のブロック数。巨大迷路は、画面に映ったタイルから順に転送する
+    private static final int TILE_BLOCKS = 256;
+
+    // 全ての描画で、単位正方形の頂点を画面上の矩形に引き伸ばして使う
+    private static final String VERTEX_SHADER =
+            "uniform vec2 u_ViewSize;\n"
+                    + "uniform vec4 u_Rect;\n"
+                    + "uniform vec2 u_Blocks;\n"
+                    + "attribute vec2 a_Corner;\n"
+                    + "varying vec2 v_TexCoord;\n"
+                    + "varying vec2 v_Block;\n"
+                    + "void main() {\n"
+                    + "    vec2 position = mix(u_Rect.xy, u_Rect.zw, a_Corner);\n"
+                    + "    v_TexCoord = a_Corner;\n"
+                    + "    v_Block = a_Corner * u_Blocks;\n"
+                    + "    gl_Position = vec4(position.x / u_ViewSize.x * 2.0 - 1.0,\n"
+                    + "            1.0 - position.y / u_ViewSize.y * 2.0, 0.0, 1.0);\n"
+                    + "}\n";
+
+    // u_BlockSizeが0より大きいときは迷路のタイルとして、ブロックの周りの1pxを背景の黒にする
+    private static final String FRAGMENT_SHADER =
+            "#ifdef GL_FRAGMENT_PRECISION_HIGH\n"
+                    + "precision highp float;\n"
+                    + "#else\n"
+                    + "precision mediump float;\n"
+                    + "#endif\n"
+                    + "uniform sampler2D u_Texture;\n"
+                    + "uniform float u_BlockSize;\n"
+                    + "varying vec2 v_TexCoord;\n"
+                    + "varying vec2 v_Block;\n"
+                    + "void main() {\n"
+                    + "    if (u_BlockSize > 0.0) {\n"
+                    + "        vec2 p = fract(v_Block) * u_BlockSize;\n"
+                    + "        if (p.x < 1.0 || p.y < 1.0 || p.x >= u_BlockSize - 1.0 || p.y >= u_BlockSize - 1.0) {\n"
+                    + "            gl_FragColor = vec4(0.0, 0.0, 0.0, 1.0);\n"
+                    + "            return;\n"
+                    + "        }\n"
+                    + "    }\n"
+                    + "    gl_FragColor = texture2D(u_Texture, v_TexCoord);\n"
+                    + "}\n";
+
+    private static final float[] QUAD = {0f, 0f, 1f, 0f, 0f, 1f, 1f, 1f};
+
+    private int program;
+    private int cornerLocation;
+    private int viewSizeLocation;
+    private int rectLocation;
+    private int blocksLocation;
+    private int blockSizeLocation;
+    private int textureLocation;
+    private int quadBuffer;
+
+    private int viewWidth;
+    private int viewHeight;
+
+    private int cameraX;
+    private int cameraY;
+
+    // テクスチャを作った迷路と、タイルごとのテクスチャ(0は未転送)
+    private Map uploadedMap;
+    private int tileColumns;
+    private int[] tileTextures;
+
+    // タイル１枚分のRGBAを詰める作業用のバッファ
+    private final ByteBuffer tilePixels =
+            ByteBuffer.allocateDirect(TILE_BLOCKS * TILE_BLOCKS * 4).order(ByteOrder.nativeOrder());
+
+    private Bitmap uploadedBall;
+    private int ballTexture;
+
+    // 文字列は表示する行(ベースラインのy座標)ごとにビットマップに描いてテクスチャにし、
+    // 文字列が変わったときだけ描き直して転送する
+    private static final class TextTexture {
+        final int y;
+        // 転送した文字列はlength文字分をtextに写しておく。-1なら未転送
+        char[] text = new char[0];
+        int length = -1;
+        Bitmap bitmap;
+        Canvas canvas;
+        int texture;
+
+        TextTexture(int y) {
+            this.y = y;
+        }
+    }
+
+    private final ArrayList<TextTexture> textTextures = new ArrayList<TextTexture>();
+
+    private final int[] names = new int[1];
+
+    // EGLコンテキストが作られたときに呼ぶ
+    // コンテキストが作り直されると、以前のテクスチャやバッファは全て失われている
+    void onSurfaceCreated() {
+        program = createProgram();
+        cornerLocation = GLES20.glGetAttribLocation(program, "a_Corner");
+        viewSizeLocation = GLES20.glGetUniformLocation(program, "u_ViewSize");
+        rectLocation = GLES20.glGetUniformLocation(program, "u_Rect");
+        blocksLocation = GLES20.glGetUniformLocation(program, "u_Blocks");
+        blockSizeLocation = GLES20.glGetUniformLocation(program, "u_BlockSize");
+        textureLocation = GLES20.glGetUniformLocation(program, "u_Texture");
+
+        FloatBuffer quad = ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        quad.put(QUAD).position(0);
+        GLES20.glGenBuffers(1, names, 0);
+        quadBuffer = names[0];
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, quadBuffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, QUAD.length * 4, quad, GLES20.GL_STATIC_DRAW);
+
+        uploadedMap = null;
+        tileTextures = null;
+        uploadedBall = null;
+        ballTexture = 0;
+        for (int i = 0; i < textTextures.size(); i++) {
+            TextTexture textTexture = textTextures.get(i);
+            textTexture.length = -1;
+            textTexture.texture = 0;
+        }
+
+        GLES20.glClearColor(0f, 0f, 0f, 1f);
+        // Bitmapから転送したテクスチャは、アルファを乗算済み
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    void onSurfaceChanged(int width, int height) {
+        viewWidth = width;
+        viewHeight = height;
+        GLES20.glViewport(0, 0, width, height);
+
+        // 文字列のテクスチャは画面の幅に合わせるので、作り直す
+        for (int i = 0; i < textTextures.size(); i++) {
+            TextTexture textTexture = textTextures.get(i);
+            textTexture.bitmap.recycle();
+            deleteTexture(textTexture.texture);
+        }
+        textTextures.clear();
+    }
+
+    // フレームの最初に呼び、画面を消して共通の状態を設定する
+    void beginFrame() {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        GLES20.glUseProgram(program);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, quadBuffer);
+        GLES20.glEnableVertexAttribArray(cornerLocation);
+        GLES20.glVertexAttribPointer(cornerLocation, 2, GLES20.GL_FLOAT, false, 0, 0);
+        GLES20.glUniform2f(viewSizeLocation, viewWidth, viewHeight);
+        GLES20.glUniform1i(textureLocation, 0);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+    }
+
+    @Override
+    public void setCamera(int cameraX, int cameraY) {
+        this.cameraX = cameraX;
+        this.cameraY = cameraY;
+    }
+
+    @Override
+    public void drawMap(Map map) {
+        BlockSource blocks = map.getBlockMap().getBlocks();
+        int blockSize = map.getBlockMap().getBlockSize();
+
+        // ステージが変わったら、前の迷路のテクスチャを捨てる
+        if (map != uploadedMap) {
+            releaseTiles();
+            uploadedMap = map;
+            tileColumns = (blocks.getWidth() + TILE_BLOCKS - 1) / TILE_BLOCKS;
+            int tileRows = (blocks.getHeight() + TILE_BLOCKS - 1) / TILE_BLOCKS;
+            tileTextures = new int[tileColumns * tileRows];
+        }
+
+        // 画面に映るタイルだけを描画する
+        int tileSize = TILE_BLOCKS * blockSize;
+        int firstColumn = Math.max(cameraX / tileSize, 0);
+        int firstRow = Math.max(cameraY / tileSize, 0);
+        int lastColumn = Math.min((cameraX + viewWidth - 1) / tileSize, tileColumns - 1);
+        int lastRow = Math.min((cameraY + viewHeight - 1) / tileSize, tileTextures.length / tileColumns - 1);
+
+        GLES20.glUniform1f(blockSizeLocation, blockSize);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int firstX = column * TILE_BLOCKS;
+                int firstY = row * TILE_BLOCKS;
+                int width = Math.min(TILE_BLOCKS, blocks.getWidth() - firstX);
+                int height = Math.min(TILE_BLOCKS, blocks.getHeight() - firstY);
+
+                int index = row * tileColumns + column;
+                if (tileTextures[index] == 0) {
+                    tileTextures[index] = uploadTile(blocks, firstX, firstY, width, height);
+                }
+
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, tileTextures[index]);
+                GLES20.glUniform2f(blocksLocation, width, height);
+                int left = firstX * blockSize - cameraX;
+                int top = firstY * blockSize - cameraY;
+                drawQuad(left, top, left + width * blockSize, top + height * blockSize);
+            }
+        }
+    }
+
+    @Override
+    public void drawBall(Bitmap bitmap, Rect rect) {
+        if (bitmap != uploadedBall || ballTexture == 0) {
+            deleteTexture(ballTexture);
+            ballTexture = createTexture(GLES20.GL_LINEAR);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+            uploadedBall = bitmap;
+        }
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, ballTexture);
+        GLES20.glUniform1f(blockSizeLocation, 0f);
+        drawQuad(rect.left - cameraX, rect.top - cameraY, rect.right - cameraX, rect.bottom - cameraY);
+    }
+
+    @Override
+    public void drawText(char[] text, int count, int x, int y, Paint paint) {
+        int ascent = (int) Math.floor(paint.ascent());
+        int descent = (int) Math.ceil(paint.descent());
+
+        TextTexture textTexture = findTextTexture(y);
+        if (textTexture == null) {
+            textTexture = new TextTexture(y);
+            textTexture.bitmap = Bitmap.createBitmap(viewWidth, descent - ascent, Bitmap.Config.ARGB_8888);
+            textTexture.canvas = new Canvas(textTexture.bitmap);
+            textTextures.add(textTexture);
+        }
+
+        if (!isSameText(textTexture, text, count)) {
+            textTexture.bitmap.eraseColor(Color.TRANSPARENT);
+            textTexture.canvas.drawText(text, 0, count, x, -ascent, paint);
+
+            if (textTexture.texture == 0) {
+                textTexture.texture = createTexture(GLES20.GL_NEAREST);
+                GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, textTexture.bitmap, 0);
+            } else {
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textTexture.texture);
+                GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, textTexture.bitmap);
+            }
+            if (textTexture.text.length < count) {
+                textTexture.text = new char[count];
+            }
+            System.arraycopy(text, 0, textTexture.text, 0, count);
+            textTexture.length = count;
+        }
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textTexture.texture);
+        GLES20.glUniform1f(blockSizeLocation, 0f);
+        drawQuad(0, y + ascent, viewWidth, y + descent);
+    }
+
+    private TextTexture findTextTexture(int y) {
+        for (int i = 0; i < textTextures.size(); i++) {
+            TextTexture textTexture = textTextures.get(i);
+            if (textTexture.y == y) {
+                return textTexture;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameText(TextTexture textTexture, char[] text, int count) {
+        if (count != textTexture.length) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (text[i] != textTexture.text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drawQuad(int left, int top, int right, int bottom) {
+        GLES20.glUniform4f(rectLocation, left, top, right, bottom);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    // ブロックの種別を色に変えて、(firstX, firstY)から幅width、高さheightのブロックを１枚のテクスチャにする
+    private int uploadTile(BlockSource blocks, int firstX, int firstY, int width, int height) {
+        tilePixels.clear();
+        for (int y = firstY; y < firstY + height; y++) {
+            for (int x = firstX; x < firstX + width; x++) {
+                int color = Map.getColor(blocks.get(x, y));
+                tilePixels.put((byte) Color.red(color));
+                tilePixels.put((byte) Color.green(color));
+                tilePixels.put((byte) Color.blue(color));
+                tilePixels.put((byte) Color.alpha(color));
+            }
+        }
+        tilePixels.position(0);
+
+        int texture = createTexture(GLES20.GL_NEAREST);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, tilePixels);
+        return texture;
+    }
+
+    private void releaseTiles() {
+        if (tileTextures == null) {
+            return;
+        }
+        for (int texture : tileTextures) {
+            deleteTexture(texture);
+        }
+        tileTextures = null;
+        uploadedMap = null;
+    }
+
+    // テクスチャを作ってバインドする。NPOTのテクスチャも使えるように、繰り返しは使わない
+    private int createTexture(int filter) {
+        GLES20.glGenTextures(1, names, 0);
+        int texture = names[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        return texture;
+    }
+
+    private void deleteTexture(int texture) {
+        if (texture != 0) {
+            names[0] = texture;
+            GLES20.glDeleteTextures(1, names, 0);
+        }
+    }
+
+    private static int createProgram() {
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(program);
+
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            throw new IllegalStateException("シェーダーのリンクに失敗しました: " + GLES20.glGetProgramInfoLog(program));
+        }
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            throw new IllegalStateException("シェーダーのコンパイルに失敗しました: " + GLES20.glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+}
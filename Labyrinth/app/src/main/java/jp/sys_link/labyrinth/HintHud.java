@@ -0,0 +1,92 @@
+package jp.sys_link.labyrinth;
+
+import jp.sys_link.labyrinth.core.LabyrinthGenerator;
+
+// ゴールへ向かう向きの矢印と残りのブロック数、ステージの目安時間の表示
+// Hudと同じく使い回すchar[]に書き込み、値が変わったときだけ書き直す。描画スレッドだけが使う
+class HintHud {
+
+    private static final char[] PREFIX = "ヒント ".toCharArray();
+    private static final char[] DISTANCE_PREFIX = " 残り".toCharArray();
+    private static final char[] DISTANCE_SUFFIX = "ブロック 目安".toCharArray();
+    private static final char[] PAR_SUFFIX = "秒".toCharArray();
+
+    // 接頭辞と矢印、intの桁数２つ分、小数点と接尾辞が入る大きさ
+    private final char[] text = new char[PREFIX.length + 1 + DISTANCE_PREFIX.length + DISTANCE_SUFFIX.length
+            + PAR_SUFFIX.length + 24];
+    private int length;
+
+    // 表示している値
+    private LabyrinthGenerator.Direction direction;
+    private int distance = Integer.MIN_VALUE;
+    private int parTenths = Integer.MIN_VALUE;
+
+    // 表示している値と同じか
+    boolean matches(LabyrinthGenerator.Direction direction, int distance, int parTenths) {
+        return direction == this.direction && distance == this.distance && parTenths == this.parTenths;
+    }
+
+    // 表示する値を設定する。値が変わったときだけ書き直し、trueを返す
+    boolean set(LabyrinthGenerator.Direction direction, int distance, int parTenths) {
+        if (matches(direction, distance, parTenths)) {
+            return false;
+        }
+        this.direction = direction;
+        this.distance = distance;
+        this.parTenths = parTenths;
+
+        int position = append(PREFIX, 0);
+        text[position++] = toArrow(direction);
+        position = append(DISTANCE_PREFIX, position);
+        position = appendInt(distance, position);
+        position = append(DISTANCE_SUFFIX, position);
+        position = appendInt(parTenths / 10, position);
+        text[position++] = '.';
+        text[position++] = (char) ('0' + parTenths % 10);
+        length = append(PAR_SUFFIX, position);
+        return true;
+    }
+
+    // ゴールの上にいるときは矢印の代わりに丸を出す
+    private static char toArrow(LabyrinthGenerator.Direction direction) {
+        if (direction == null) {
+            return '○';
+        }
+        switch (direction) {
+            case TOP:
+                return '↑';
+            case LEFT:
+                return '←';
+            case RIGHT:
+                return '→';
+            default:
+                return '↓';
+        }
+    }
+
+    private int append(char[] chars, int position) {
+        System.arraycopy(chars, 0, text, position, chars.length);
+        return position + chars.length;
+    }
+
+    // 0以上の値を10進数で書き込む
+    private int appendInt(int value, int position) {
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    char[] getText() {
+        return text;
+    }
+
+    int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,44 @@
+package jp.sys_link.labyrinth;
+
+import jp.sys_link.labyrinth.core.TenthsFormat;
+
+// 経過時間の表示。数値を使い回すchar[]に書き込み、フレームごとに文字列を作らずに描画できるようにする
+// 描画スレッドだけが使う
+class Hud {
+
+    private static final char[] PREFIX = "経過時間 = ".toCharArray();
+
+    private final char[] text = new char[PREFIX.length + TenthsFormat.MAX_LENGTH];
+    private int length;
+
+    // 表示している値(0.1秒単位)
+    private int tenths = Integer.MIN_VALUE;
+
+    Hud() {
+        System.arraycopy(PREFIX, 0, text, 0, PREFIX.length);
+    }
+
+    int getTenths() {
+        return tenths;
+    }
+
+    // 表示する経過時間を0.1秒単位で設定する。値が変わったときだけ書き直し、trueを返す
+    boolean setTenths(int tenths) {
+        if (tenths == this.tenths) {
+            return false;
+        }
+        this.tenths = tenths;
+
+        // String.format("%.1f", tenths / 10f)と同じ表示を、接頭辞の直後に書き込む
+        length = TenthsFormat.format(tenths, text, PREFIX.length);
+        return true;
+    }
+
+    char[] getText() {
+        return text;
+    }
+
+    int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,62 @@
+package jp.sys_link.labyrinth;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+// OpenGL ES 2.0で描画するView
+// GLスレッドが画面の更新に合わせてonDrawFrameを呼ぶので、毎フレームLabyrinthGameを進めてGLRendererで描画する
+public class LabyrinthGLView extends GLSurfaceView implements GLSurfaceView.Renderer {
+
+    private final LabyrinthGame game;
+
+    private final GLRenderer renderer = new GLRenderer();
+
+    // サーフェスの大きさ。GLスレッドだけが使う
+    private int width;
+    private int height;
+
+    public LabyrinthGLView(Context context, LabyrinthGame game) {
+        super(context);
+
+        this.game = game;
+
+        setEGLContextClientVersion(2);
+        // 一時停止してもテクスチャを転送し直さなくて済むように、できればコンテキストを残す
+        setPreserveEGLContextOnPause(true);
+        setRenderer(this);
+        setRenderMode(RENDERMODE_CONTINUOUSLY);
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        renderer.onSurfaceCreated();
+
+        game.start();
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 gl, int width, int height) {
+        this.width = width;
+        this.height = height;
+        renderer.onSurfaceChanged(width, height);
+
+        game.prefetch(width, height);
+    }
+
+    @Override
+    public void onDrawFrame(GL10 gl) {
+        float alpha = game.update();
+
+        // 画面を入れ替えると前のフレームの内容は残らないので、毎フレーム全体を描画する
+        // 画面の入れ替えはこのメソッドから戻ったあとなので、描画の命令を出し終えるまでを計る
+        long frameStart = System.nanoTime();
+        renderer.beginFrame();
+        game.draw(renderer, width, height, alpha);
+        game.getProfiler().record(LabyrinthGame.PROFILE_FRAME, frameStart);
+
+        game.onFrameDrawn();
+    }
+}
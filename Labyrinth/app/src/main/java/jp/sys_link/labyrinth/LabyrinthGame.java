@@ -0,0 +1,683 @@
+package jp.sys_link.labyrinth;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jp.sys_link.labyrinth.core.AccelerationFilter;
+import jp.sys_link.labyrinth.core.BallBody;
+import jp.sys_link.labyrinth.core.BlockMap;
+import jp.sys_link.labyrinth.core.BlockSource;
+import jp.sys_link.labyrinth.core.ChunkedLabyrinth;
+import jp.sys_link.labyrinth.core.EmaFilter;
+import jp.sys_link.labyrinth.core.GameClock;
+import jp.sys_link.labyrinth.core.LabyrinthGenerator;
+import jp.sys_link.labyrinth.core.MazeSolver;
+import jp.sys_link.labyrinth.core.Physics;
+import jp.sys_link.labyrinth.core.Profiler;
+import jp.sys_link.labyrinth.core.Replay;
+import jp.sys_link.labyrinth.core.ReplayRecorder;
+import jp.sys_link.labyrinth.core.StageCache;
+import jp.sys_link.labyrinth.core.StagePrefetcher;
+
+// ステージの状態とボールの物理計算を持ち、Rendererを通して１フレームずつ描画する
+// 描画するViewは、Canvasで描くLabyrinthViewか、OpenGL ESで描くLabyrinthGLViewのどちらか
+// センサーとステージの切り替え以外のメソッドは、Viewの描画スレッドだけから呼ぶ
+public class LabyrinthGame {
+
+    private static final String TAG = "LabyrinthGame";
+
+    // 所要時間を計る区間。描画スレッドとGLスレッドで計り、物理計算は１ステップごとに計る
+    // lockCanvasとunlockCanvasAndPostは、Canvasで描画するときだけ計る
+    static final int PROFILE_FRAME = 0;
+    static final int PROFILE_LOCK_CANVAS = 1;
+    static final int PROFILE_DRAW_MAP = 2;
+    static final int PROFILE_DRAW_BALL = 3;
+    static final int PROFILE_DRAW_HUD = 4;
+    static final int PROFILE_UNLOCK_POST = 5;
+    static final int PROFILE_PHYSICS = 6;
+
+    private static final String[] PROFILE_SECTIONS = {
+            "frame", "lockCanvas", "drawMap", "drawBall", "drawHud", "unlockPost", "physics"
+    };
+
+    // 区間ごとに記録する回数。60fpsで約8秒分
+    private static final int PROFILE_WINDOW = 512;
+
+    // プロファイラの表示を書き換える間隔。毎フレーム変わると読めないので、0.5秒ごとにする
+    private static final long OVERLAY_INTERVAL_NS = 500000000L;
+
+    // 巨大迷路の縦横のブロック数
+    private static final int LARGE_STAGE_BLOCK_NUM = 1001;
+
+    // テキストペイントオブジェクトの生成
+    private static final Paint TEXT_PAINT = new Paint();
+    private static final Paint OVERLAY_PAINT = new Paint();
+    private static final Paint HINT_PAINT = new Paint();
+
+    // 経過時間を表示するベースラインの位置
+    private static final int HUD_X = 10;
+    private static final int HUD_Y = 300;
+
+    // 経過時間の表示が占める縦の範囲。表示が変わったときに書き直す
+    private static final int HUD_TOP;
+    private static final int HUD_BOTTOM;
+
+    // プロファイラの表示は、経過時間の下に区間ごとに１行ずつ並べる
+    private static final int OVERLAY_LINE_HEIGHT;
+    private static final int OVERLAY_TOP;
+    private static final int OVERLAY_BOTTOM;
+    private static final int OVERLAY_DESCENT;
+
+    // ヒントの表示は、プロファイラの表示の下に１行で出す
+    private static final int HINT_Y;
+    private static final int HINT_TOP;
+    private static final int HINT_BOTTOM;
+
+    static {
+        // センサー表示テキストの色設定
+        TEXT_PAINT.setColor(Color.WHITE);
+        // センサー表示テキストのサイズ設定
+        TEXT_PAINT.setTextSize(40f);
+
+        HUD_TOP = HUD_Y + (int) Math.floor(TEXT_PAINT.ascent());
+        HUD_BOTTOM = HUD_Y + (int) Math.ceil(TEXT_PAINT.descent());
+
+        OVERLAY_PAINT.setColor(Color.YELLOW);
+        OVERLAY_PAINT.setTextSize(24f);
+        // 数値の桁をそろえるため、等幅のフォントにする
+        OVERLAY_PAINT.setTypeface(Typeface.MONOSPACE);
+
+        OVERLAY_DESCENT = (int) Math.ceil(OVERLAY_PAINT.descent());
+        OVERLAY_LINE_HEIGHT = OVERLAY_DESCENT - (int) Math.floor(OVERLAY_PAINT.ascent());
+        OVERLAY_TOP = HUD_BOTTOM;
+        OVERLAY_BOTTOM = OVERLAY_TOP + OVERLAY_LINE_HEIGHT * PROFILE_SECTIONS.length;
+
+        HINT_PAINT.setColor(Color.CYAN);
+        HINT_PAINT.setTextSize(32f);
+
+        HINT_TOP = OVERLAY_BOTTOM;
+        HINT_Y = HINT_TOP - (int) Math.floor(HINT_PAINT.ascent());
+        HINT_BOTTOM = HINT_Y + (int) Math.ceil(HINT_PAINT.descent());
+    }
+
+    // 加速度センサーのサンプルをためておき、物理計算のたびにフィルタへ渡す
+    private final AccelerometerInput input;
+
+    // 加速度センサーの値を滑らかにするフィルタ。描画スレッドだけが使う
+    private AccelerationFilter filter = new EmaFilter();
+
+    // UIスレッドから差し替えを要求されたフィルタ。次の物理計算で反映する
+    private final AtomicReference<AccelerationFilter> pendingFilter = new AtomicReference<AccelerationFilter>();
+
+    // 加速度センサーの値を滑らかにするフィルタを差し替える
+    public void setInputFilter(AccelerationFilter filter) {
+        pendingFilter.set(filter);
+    }
+
+    // ゴールと穴は描画スレッドで検出するので、UIスレッドに渡してから通知する
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // ボールの画像と、その高さから決めたブロックの大きさ
+    private final BallSprite ballSprite;
+    // ballの変数宣言
+    private Ball ball;
+    // mapの変数宣言
+    private Map map;
+    // ステージの経過時間。物理計算、経過時間の表示、ゴールまでの時間の全てに使う
+    private final GameClock clock = new GameClock();
+
+    // ゴールに着いたときの経過時間(ナノ秒)
+    private volatile long finishNanos;
+
+    // 今のステージの最短経路。巨大迷路では求めないのでnull。描画スレッドだけが使う
+    private MazeSolver solver;
+
+    // スタートからゴールまでの目安時間(ナノ秒)。求めていなければ-1
+    private volatile long parNanos = -1;
+
+    private volatile int seed;
+
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    // 画面より大きな迷路を、スクロールしながら遊ぶか。次のステージから反映する
+    private volatile boolean isLargeStage;
+
+    public void setLargeStage(boolean largeStage) {
+        isLargeStage = largeStage;
+    }
+
+    // ステージの切り替え要求。UIスレッドで設定し、描画スレッドがフレームの先頭で反映する
+    private static final int NO_PENDING_STAGE = Integer.MIN_VALUE;
+    private final AtomicInteger pendingSeed = new AtomicInteger(NO_PENDING_STAGE);
+
+    // ステージの切り替えを要求した時刻。次のステージの最初のフレームまでの時間を計測する
+    private volatile long stageRequestedAt;
+    private boolean isStageStarting;
+
+    // ゴールか穴を通知したら、次のステージが始まるまでボールを止める。描画スレッドだけが使う
+    private boolean isStageEnded;
+    private int stageOutcome = Replay.OUTCOME_NONE;
+
+    // 今のステージの迷路の種類(Replay.STAGE_GENERATEDかSTAGE_CHUNKED)。描画スレッドだけが使う
+    private int stageType;
+
+    // ステージ開始からの物理計算の回数。リプレイの時刻に使う
+    private int physicsStep;
+
+    // ステージごとにフィルタ後のセンサーの値を記録し、ゴールか穴に着いたらファイルに書き出す
+    private volatile boolean isRecordingReplay;
+    private ReplayRecorder recorder;
+    private final ReplayStore replayStore;
+
+    // 次のステージから、リプレイを記録するか
+    public void setRecordingReplay(boolean recordingReplay) {
+        isRecordingReplay = recordingReplay;
+    }
+
+    // 同じViewのまま、指定したシードのステージを始める
+    // サーフェスと描画スレッド、ボールのBitmapはそのまま使い回す
+    public void startStage(int seed) {
+        stageRequestedAt = System.nanoTime();
+        pendingSeed.set(seed);
+    }
+
+    // 描画スレッドで、要求されたステージに切り替える
+    private void applyPendingStage() {
+        int nextSeed = pendingSeed.getAndSet(NO_PENDING_STAGE);
+        if (nextSeed == NO_PENDING_STAGE) {
+            return;
+        }
+        seed = nextSeed;
+
+        // マップとボールは最初のフレームで作り直す
+        releaseCache();
+        map = null;
+        ball = null;
+        isStageEnded = false;
+        isStageStarting = true;
+        stageOutcome = Replay.OUTCOME_NONE;
+        physicsStep = 0;
+        recorder = null;
+        solver = null;
+        parNanos = -1;
+        hintDrawn = false;
+
+        clock.start();
+        previousTime = 0;
+        accumulator = 0;
+    }
+
+    interface Callback {
+        public void onGoal();
+
+        public void onHole();
+    }
+
+    private Callback callback;
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    // 迷路のキャッシュを置くディレクトリと、その合計の上限。1000x1000ブロックの迷路でも1つ250KB程度
+    private static final String STAGE_CACHE_DIRECTORY = "stages";
+    private static final long STAGE_CACHE_BYTES = 4 * 1024 * 1024;
+
+    public LabyrinthGame(Context context) {
+        input = new AccelerometerInput(context);
+        replayStore = new ReplayStore(context);
+        profileStore = new ProfileStore(context);
+
+        // 一度遊んだステージは、次に起動したときに生成せずディスクから読み込む
+        StagePrefetcher.getInstance().setCache(
+                new StageCache(new File(context.getCacheDir(), STAGE_CACHE_DIRECTORY), STAGE_CACHE_BYTES));
+
+        // ボールの画像を、表示する大きさに縮小してロード
+        ballSprite = BallSprite.decode(context.getResources(), R.drawable.ball, Physics.BALL_SCALE,
+                BitmapPool.getInstance());
+    }
+
+    // 処理が遅れたときに、まとめて進める物理計算の上限
+    private static final long MAX_FRAME_TIME_NS = Physics.STEP_NS * 5;
+
+    // 前回物理計算を進めたときの経過時間(ナノ秒)と、まだ進めていない時間
+    private long previousTime;
+    private long accumulator;
+
+    // 前回描画したときのボールの位置とカメラの位置。変化がなければ描画を省略する
+    private int drawnBallLeft = Integer.MIN_VALUE;
+    private int drawnBallTop = Integer.MIN_VALUE;
+    private int drawnCameraX;
+    private int drawnCameraY;
+
+    // 経過時間の表示。表示時間が変わったときだけ文字を書き直す
+    private final Hud hud = new Hud();
+
+    // 区間ごとの所要時間
+    private final Profiler profiler = new Profiler(PROFILE_SECTIONS, PROFILE_WINDOW);
+    private final ProfileStore profileStore;
+
+    // プロファイラを画面に重ねて表示するか。UIスレッドで設定し、描画スレッドがフレームの先頭で反映する
+    private volatile boolean isProfilerShown;
+    private boolean overlayShown;
+
+    // ヒントを表示するか。UIスレッドで設定し、描画スレッドがフレームの先頭で反映する
+    private volatile boolean isHintShown;
+    private boolean hintShown;
+
+    // ボールのいるブロックから求めた、ゴールへ向かう向きと残りのブロック数。物理計算のたびに更新する
+    private LabyrinthGenerator.Direction hintDirection;
+    private int hintDistance;
+
+    // 表示しているヒントと、表示したか。描画スレッドだけが使う
+    private final HintHud hintHud = new HintHud();
+    private boolean hintDrawn;
+
+    // 表示している行の文字と、表示したか、最後に書き換えた時刻。描画スレッドだけが使う
+    private final char[][] overlayLines = new char[PROFILE_SECTIONS.length][Profiler.LINE_LENGTH];
+    private final int[] overlayLengths = new int[PROFILE_SECTIONS.length];
+    private boolean overlayDrawn;
+    private long overlayUpdatedAt;
+
+    Profiler getProfiler() {
+        return profiler;
+    }
+
+    // 区間ごとの所要時間を画面に重ねて表示する
+    public void setProfilerShown(boolean shown) {
+        isProfilerShown = shown;
+    }
+
+    // 区間ごとの所要時間をファイルに書き出す。書き出す先のファイルを返す
+    public File exportProfile(String rendererName) {
+        return profileStore.save(profiler, rendererName);
+    }
+
+    // 描画スレッドが動き始めたときに呼ぶ。描画スレッドが止まっていた間の物理計算はまとめて進めない
+    void start() {
+        previousTime = clock.getElapsedNanos();
+        accumulator = 0;
+    }
+
+    // Activityが裏に回っている間は、経過時間を止める
+    public void pause() {
+        clock.pause();
+    }
+
+    public void resume() {
+        clock.resume();
+    }
+
+    // ゴールまでにかかった時間(秒)
+    public double getFinishSeconds() {
+        return finishNanos / 1e9;
+    }
+
+    // 今のステージの目安時間(秒)。求めていなければ負の値
+    public double getParSeconds() {
+        return parNanos / 1e9;
+    }
+
+    // ゴールまでにかかった時間を目安時間と比べた評価(1〜MazeSolver.MAX_RATING)。目安時間がなければ0
+    public int getRating() {
+        long par = parNanos;
+        return par < 0 ? 0 : MazeSolver.rate(finishNanos, par);
+    }
+
+    // ゴールへ向かう向きと目安時間を画面に表示する
+    public void setHintShown(boolean shown) {
+        isHintShown = shown;
+    }
+
+    // ステージの切り替えを反映し、前回から経過した時間の分だけ固定間隔で物理計算を進める
+    // 戻り値は物理計算の途中の時間(0〜1)で、前回と今回の位置の補間に使う
+    float update() {
+        applyPendingStage();
+        overlayShown = isProfilerShown;
+        hintShown = isHintShown;
+
+        // 一時停止している間は経過時間が進まないので、ボールも動かない
+        long now = clock.getElapsedNanos();
+        accumulator += Math.min(now - previousTime, MAX_FRAME_TIME_NS);
+        previousTime = now;
+
+        while (accumulator >= Physics.STEP_NS) {
+            stepPhysics();
+            accumulator -= Physics.STEP_NS;
+        }
+        return (float) accumulator / Physics.STEP_NS;
+    }
+
+    // 前回から届いたセンサーの値をフィルタに通し、ボールを１ステップ分動かす
+    // センサーの通知間隔に関係なく、物理計算の間隔で読み出す
+    // ボールとマップは描画スレッドだけが触るので、同期は必要ない
+    private void stepPhysics() {
+        AccelerationFilter nextFilter = pendingFilter.getAndSet(null);
+        if (nextFilter != null) {
+            filter = nextFilter;
+            filter.reset();
+        }
+        input.drainTo(filter);
+        physicsStep++;
+
+        if (ball == null || isStageEnded || !filter.hasValue()) {
+            return;
+        }
+        float x = filter.getX();
+        float y = filter.getY();
+        if (recorder != null) {
+            recorder.record(physicsStep, x, y);
+        }
+        // ボールの移動と、その中で行うマップとの当たり判定の時間を計る
+        long time = System.nanoTime();
+        Physics.step(ball.getBody(), x, y);
+        profiler.record(PROFILE_PHYSICS, time);
+
+        updateHint();
+
+        // ゴールか穴に着いたら、そこまでの記録を書き出す
+        if (isStageEnded && recorder != null) {
+            replayStore.save(recorder.finish(stageOutcome, physicsStep,
+                    ball.getBody().getLeft(), ball.getBody().getTop()));
+            recorder = null;
+        }
+    }
+
+    // ボールの中心があるブロックから、ゴールへ向かう向きと残りのブロック数を求める
+    // 距離はステージごとに一度だけ計算してあるので、隣のブロックを見るだけで済む
+    private void updateHint() {
+        if (solver == null) {
+            return;
+        }
+        BallBody body = ball.getBody();
+        int blockSize = map.getBlockMap().getBlockSize();
+        int x = (body.getLeft() + body.getWidth() / 2) / blockSize;
+        int y = (body.getTop() + body.getHeight() / 2) / blockSize;
+        int distance = solver.getDistance(x, y);
+        // 壁の角をかすめて中心が壁のブロックに入ったときは、前の表示のままにする
+        if (distance >= 0) {
+            hintDirection = solver.getHint(x, y);
+            hintDistance = distance;
+        }
+    }
+
+    // ヒントを出す、消す、または書き換える必要があるか
+    private boolean needsHintUpdate() {
+        if (solver == null) {
+            return false;
+        }
+        if (hintShown != hintDrawn) {
+            return true;
+        }
+        return hintShown && !hintHud.matches(hintDirection, hintDistance, getParTenths());
+    }
+
+    // 表示する目安時間(0.1秒単位)
+    private int getParTenths() {
+        return (int) (parNanos / 100000000L);
+    }
+
+    // ボールか経過時間の表示が変わったときだけ描画する
+    boolean needsRedraw(float alpha) {
+        if (ball == null || needsOverlayUpdate() || needsHintUpdate()) {
+            return true;
+        }
+        if (isStageEnded) {
+            return false;
+        }
+        return ball.getDrawLeft(alpha) != drawnBallLeft
+                || ball.getDrawTop(alpha) != drawnBallTop
+                || getTimeTenths() != hud.getTenths();
+    }
+
+    // 前回の描画から変わる範囲を、画面の座標系でdirtyに求める
+    // 画面全体を書き直す必要があるときはfalseを返す
+    boolean calcDirtyRect(float alpha, int width, int height, Rect dirty) {
+        if (map == null || ball == null) {
+            return false;
+        }
+        int left = ball.getDrawLeft(alpha);
+        int top = ball.getDrawTop(alpha);
+
+        // カメラが動くときは、画面全体がスクロールする
+        if (calcCameraX(left, width) != drawnCameraX || calcCameraY(top, height) != drawnCameraY) {
+            return false;
+        }
+
+        // 前回と今回のボールの位置を含む範囲
+        dirty.set(drawnBallLeft, drawnBallTop, drawnBallLeft + ball.getWidth(), drawnBallTop + ball.getHeight());
+        dirty.union(left, top, left + ball.getWidth(), top + ball.getHeight());
+        dirty.offset(-drawnCameraX, -drawnCameraY);
+
+        if (getTimeTenths() != hud.getTenths()) {
+            dirty.union(0, HUD_TOP, width, HUD_BOTTOM);
+        }
+        if (needsOverlayUpdate()) {
+            dirty.union(0, OVERLAY_TOP, width, OVERLAY_BOTTOM);
+        }
+        if (needsHintUpdate()) {
+            dirty.union(0, HINT_TOP, width, HINT_BOTTOM);
+        }
+        return true;
+    }
+
+    // プロファイラの表示を出す、消す、または書き換える時刻になったか
+    private boolean needsOverlayUpdate() {
+        if (overlayShown != overlayDrawn) {
+            return true;
+        }
+        return overlayShown && System.nanoTime() - overlayUpdatedAt >= OVERLAY_INTERVAL_NS;
+    }
+
+    // 表示する経過時間(0.1秒単位)。ゴールしたあとは、ゴールしたときの時間のまま止める
+    private int getTimeTenths() {
+        long nanos = isStageEnded ? finishNanos : clock.getElapsedNanos();
+        return (int) (nanos / 100000000L);
+    }
+
+    // 幅width、高さheightの画面に１フレーム分を描画する
+    void draw(Renderer renderer, int width, int height, float alpha) {
+        // Mapの縦横は描画をする画面のサイズ、Blockのサイズはボールのサイズを設定する
+        if (map == null) {
+            map = createMap(width, height, ballSprite.getBlockSize());
+        }
+
+        if (ball == null) {
+            ball = new Ball(ballSprite.getBitmap(), map);
+            ball.setOnMoveListener(map.getBlockMap());
+            updateHint();
+
+            if (isRecordingReplay) {
+                BlockSource blocks = map.getBlockMap().getBlocks();
+                recorder = new ReplayRecorder(seed, stageType, blocks.getWidth(), blocks.getHeight(),
+                        map.getBlockMap().getBlockSize(), ball.getBody().getWidth(), ball.getBody().getHeight());
+            }
+        }
+
+        drawnBallLeft = ball.getDrawLeft(alpha);
+        drawnBallTop = ball.getDrawTop(alpha);
+
+        // ボールを画面の中央に映すようにカメラを動かす。迷路が画面に収まるときは動かさない
+        drawnCameraX = calcCameraX(drawnBallLeft, width);
+        drawnCameraY = calcCameraY(drawnBallTop, height);
+
+        renderer.setCamera(drawnCameraX, drawnCameraY);
+        long time = System.nanoTime();
+        renderer.drawMap(map);
+        time = profiler.record(PROFILE_DRAW_MAP, time);
+        ball.draw(renderer, alpha);
+        time = profiler.record(PROFILE_DRAW_BALL, time);
+
+        hud.setTenths(getTimeTenths());
+        renderer.drawText(hud.getText(), hud.getLength(), HUD_X, HUD_Y, TEXT_PAINT);
+        drawHint(renderer);
+        profiler.record(PROFILE_DRAW_HUD, time);
+
+        drawOverlay(renderer);
+    }
+
+    // ゴールへ向かう向きと目安時間を描画する。Canvasでは書き直す範囲の外は前のフレームのまま残る
+    private void drawHint(Renderer renderer) {
+        if (solver == null) {
+            return;
+        }
+        hintDrawn = hintShown;
+        if (!hintShown) {
+            return;
+        }
+        hintHud.set(hintDirection, hintDistance, getParTenths());
+        renderer.drawText(hintHud.getText(), hintHud.getLength(), HUD_X, HINT_Y, HINT_PAINT);
+    }
+
+    // プロファイラの表示を、間隔をあけて書き換えながら描画する
+    // Canvasでは書き直す範囲がボールと重なることがあるので、表示している間は毎フレーム描画する
+    private void drawOverlay(Renderer renderer) {
+        if (needsOverlayUpdate()) {
+            overlayDrawn = overlayShown;
+            overlayUpdatedAt = System.nanoTime();
+            if (overlayShown) {
+                for (int i = 0; i < overlayLines.length; i++) {
+                    overlayLengths[i] = profiler.formatLine(i, overlayLines[i]);
+                }
+            }
+        }
+        if (!overlayShown) {
+            return;
+        }
+        for (int i = 0; i < overlayLines.length; i++) {
+            int baseline = OVERLAY_TOP + OVERLAY_LINE_HEIGHT * (i + 1) - OVERLAY_DESCENT;
+            renderer.drawText(overlayLines[i], overlayLengths[i], HUD_X, baseline, OVERLAY_PAINT);
+        }
+    }
+
+    // フレームを画面に送ったあとに呼ぶ。ステージの最初のフレームなら、切り替えにかかった時間を記録する
+    void onFrameDrawn() {
+        if (isStageStarting) {
+            isStageStarting = false;
+            Log.d(TAG, "stage " + seed + " first frame in "
+                    + (System.nanoTime() - stageRequestedAt) / 1000 + "us");
+        }
+    }
+
+    // サーフェスの大きさが決まったときに、最初のフレームを待たずにこのステージの迷路の生成を始める
+    void prefetch(int width, int height) {
+        if (isLargeStage) {
+            return;
+        }
+        int blockSize = ballSprite.getBlockSize();
+        StagePrefetcher.getInstance().prefetch(seed,
+                BlockMap.toBlockNum(width, blockSize), BlockMap.toBlockNum(height, blockSize));
+    }
+
+    // マップのキャッシュを解放する。描画スレッドが止まっているときはUIスレッドから呼んでもよい
+    void releaseCache() {
+        if (map != null) {
+            map.releaseCache();
+        }
+    }
+
+    // 描画スレッドで検出したゴールと穴を、UIスレッドに通知する
+    private final Runnable goalNotifier = new Runnable() {
+        @Override
+        public void run() {
+            if (callback != null) {
+                callback.onGoal();
+            }
+        }
+    };
+
+    private final Runnable holeNotifier = new Runnable() {
+        @Override
+        public void run() {
+            if (callback != null) {
+                callback.onHole();
+            }
+        }
+    };
+
+    // ステージごとに、最初に起きたゴールか穴だけを通知する
+    private final BlockMap.Callback mapCallback = new BlockMap.Callback() {
+        @Override
+        public void onGoal() {
+            if (!isStageEnded) {
+                finishNanos = clock.getElapsedNanos();
+                isStageEnded = true;
+                stageOutcome = Replay.OUTCOME_GOAL;
+                mainHandler.post(goalNotifier);
+            }
+        }
+
+        @Override
+        public void onHole() {
+            if (!isStageEnded) {
+                finishNanos = clock.getElapsedNanos();
+                isStageEnded = true;
+                stageOutcome = Replay.OUTCOME_HOLE;
+                mainHandler.post(holeNotifier);
+            }
+        }
+    };
+
+    private Map createMap(int width, int height, int blockSize) {
+        if (isLargeStage) {
+            stageType = Replay.STAGE_CHUNKED;
+
+            // 必要な部分だけを生成するので、先読みは行わない
+            ChunkedLabyrinth labyrinth = new ChunkedLabyrinth(seed, LARGE_STAGE_BLOCK_NUM, LARGE_STAGE_BLOCK_NUM);
+            return new Map(labyrinth, labyrinth.getStartX(), labyrinth.getStartY(), blockSize, mapCallback);
+        }
+
+        stageType = Replay.STAGE_GENERATED;
+        int horizontalBlockNum = BlockMap.toBlockNum(width, blockSize);
+        int verticalBlockNum = BlockMap.toBlockNum(height, blockSize);
+
+        StagePrefetcher prefetcher = StagePrefetcher.getInstance();
+        LabyrinthGenerator.MapResult result = prefetcher.getMap(seed, horizontalBlockNum, verticalBlockNum);
+        Map map = new Map(result, blockSize, mapCallback);
+
+        // ゴールからの距離を求めておき、ヒントと目安時間に使う
+        solver = MazeSolver.of(result);
+        parNanos = solver.getParNanos(result.startX, result.startY, blockSize);
+
+        // 遊んでいる間に、次のステージの迷路を生成しておく
+        prefetcher.prefetch(seed + 1, horizontalBlockNum, verticalBlockNum);
+        return map;
+    }
+
+    private int calcCameraX(int ballLeft, int viewWidth) {
+        return calcCamera(ballLeft + ballSprite.getBlockSize() / 2, viewWidth, map.getPixelWidth());
+    }
+
+    private int calcCameraY(int ballTop, int viewHeight) {
+        return calcCamera(ballTop + ballSprite.getBlockSize() / 2, viewHeight, map.getPixelHeight());
+    }
+
+    private static int calcCamera(int ballCenter, int viewSize, int mapSize) {
+        if (mapSize <= viewSize) {
+            return 0;
+        }
+        return Math.max(0, Math.min(ballCenter - viewSize / 2, mapSize - viewSize));
+    }
+
+    // 加速度センサーの開始
+    public void startSensor() {
+        input.start();
+    }
+
+    // 加速度センサーの停止
+    public void stopSensor() {
+        input.stop();
+    }
+}
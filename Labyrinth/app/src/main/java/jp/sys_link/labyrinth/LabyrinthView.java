@@ -1,84 +1,83 @@
 package jp.sys_link.labyrinth;
 
 import android.content.Context;
-import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
+import android.graphics.Rect;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
-public class LabyrinthView extends SurfaceView implements SurfaceHolder.Callback, SensorEventListener {
+import jp.sys_link.labyrinth.core.Profiler;
 
-    private static final float BALL_SCALE = 0.8f;
+// Canvasで描画するView。OpenGL ES 2.0が使えない端末では、LabyrinthGLViewの代わりにこちらを使う
+// 描画スレッドでLabyrinthGameを動かし、変化があったフレームだけをCanvasRendererで描画する
+public class LabyrinthView extends SurfaceView implements SurfaceHolder.Callback {
 
-    private static final float ACCEL_WEIGHT = 3f;
+    private final LabyrinthGame game;
 
-    // テキストペイントオブジェクトの生成
-    private static final Paint TEXT_PAINT = new Paint();
+    private final CanvasRenderer renderer = new CanvasRenderer();
 
-    static {
-        // センサー表示テキストの色設定
-        TEXT_PAINT.setColor(Color.WHITE);
-        // センサー表示テキストのサイズ設定
-        TEXT_PAINT.setTextSize(40f);
-    }
-
-    private Bitmap ballBitmap;
-    // ballの変数宣言
-    private Ball ball;
-    // mapの変数宣言
-    private Map map;
-    //timeの変数宣言
-    public Time time;
-
-    private int seed;
+    private final Profiler profiler;
 
-    public void setSeed(int seed) {
-        this.seed = seed;
-    }
+    public LabyrinthView(Context context, LabyrinthGame game) {
+        super(context);
 
-    interface Callback {
-        public void onGoal();
+        this.game = game;
+        profiler = game.getProfiler();
 
-        public void onHole();
+        getHolder().addCallback(this);
     }
 
-    private Callback callback;
 
-    public void setCallback(Callback callback) {
-        this.callback = callback;
-    }
-
-    public LabyrinthView(Context context) {
-        super(context);
+    private DrawThread drawThread;
 
-        getHolder().addCallback(this);
+    // サーフェスが作り直されたので、次のフレームで画面全体を描画する必要があるか
+    private volatile boolean needsFullRedraw = true;
 
-        // ボールのBitmapをロード
-        ballBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.ball);
-    }
+    // 描画の目標フレームレートと、１フレームの間隔
+    private static final int DEFAULT_TARGET_FPS = 60;
 
+    private static final long FRAME_INTERVAL_NS = 1000000000L / DEFAULT_TARGET_FPS;
 
-    private DrawThread drawThread;
+    // 書き直す範囲(画面の座標系)。描画スレッドだけが使う
+    private final Rect dirtyRect = new Rect();
 
     private class DrawThread extends Thread {
-        private boolean isFinished;
+        private volatile boolean isFinished;
 
         @Override
         public void run() {
-
             while (!isFinished) {
-                Canvas canvas = getHolder().lockCanvas();
-                if (canvas != null) {
-                    drawLabyrinth(canvas);
-                    getHolder().unlockCanvasAndPost(canvas);
+                long frameStart = System.nanoTime();
+                float alpha = game.update();
+
+                if (needsFullRedraw || game.needsRedraw(alpha)) {
+                    // ボールと経過時間の周りだけが変わるときは、その範囲だけをロックして書き直す
+                    long lockStart = System.nanoTime();
+                    Canvas canvas = !needsFullRedraw && game.calcDirtyRect(alpha, getWidth(), getHeight(), dirtyRect)
+                            ? getHolder().lockCanvas(dirtyRect)
+                            : getHolder().lockCanvas();
+                    profiler.record(LabyrinthGame.PROFILE_LOCK_CANVAS, lockStart);
+                    if (canvas != null) {
+                        needsFullRedraw = false;
+                        renderer.setCanvas(canvas);
+                        game.draw(renderer, canvas.getWidth(), canvas.getHeight(), alpha);
+                        long postStart = System.nanoTime();
+                        getHolder().unlockCanvasAndPost(canvas);
+                        profiler.record(LabyrinthGame.PROFILE_UNLOCK_POST, postStart);
+                        profiler.record(LabyrinthGame.PROFILE_FRAME, lockStart);
+
+                        game.onFrameDrawn();
+                    }
+                }
+
+                // 次のフレームまで眠り、CPUを使い続けないようにする
+                long sleepNs = frameStart + FRAME_INTERVAL_NS - System.nanoTime();
+                if (sleepNs > 0) {
+                    try {
+                        Thread.sleep(sleepNs / 1000000L, (int) (sleepNs % 1000000L));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
                 }
             }
         }
@@ -87,11 +86,10 @@ public class LabyrinthView extends SurfaceView implements SurfaceHolder.Callback
     public void startDrawThread() {
         stopDrawThread();
 
+        game.start();
+
         drawThread = new DrawThread();
         drawThread.start();
-        //経過時間スタート
-        time = new Time();
-        time.start();
     }
 
     public boolean stopDrawThread() {
@@ -100,99 +98,43 @@ public class LabyrinthView extends SurfaceView implements SurfaceHolder.Callback
         }
 
         drawThread.isFinished = true;
-        drawThread = null;
-        return true;
-    }
-
-    public void drawLabyrinth(Canvas canvas) {
-        canvas.drawColor(Color.BLACK);
-
-        // Mapの縦横は描画をするCanvasのサイズ、Blockのサイズはボールのサイズを設定する
-        int blockSize = ballBitmap.getHeight();
-        if (map == null) {
-            map = new Map(canvas.getWidth(), canvas.getHeight(), blockSize, callback, seed);
-        }
-
-        if (ball == null) {
-            ball = new Ball(ballBitmap, map.getStartBlock(), BALL_SCALE);
-            ball.setOnMoveListener(map);
+        // 描画中のフレームが終わるまで待ち、キャッシュを解放しても安全な状態にする
+        boolean interrupted = false;
+        while (drawThread.isAlive()) {
+            try {
+                drawThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
         }
-
-        map.drawMap(canvas);
-
-        ball.draw(canvas);
-
-        if (sensorValues != null) {
-            // 加速度センサーの値を表示させる
-            //canvas.drawText("sensor[0] = " + sensorValues[0], 10, 150, TEXT_PAINT);
-            //canvas.drawText("sensor[1] = " + sensorValues[1], 10, 200, TEXT_PAINT);
-            //canvas.drawText("sensor[2] = " + sensorValues[2], 10, 250, TEXT_PAINT);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
-        canvas.drawText("経過時間 = " + String.format("%.1f", time.getElipseTime()), 10, 300, TEXT_PAINT);
-    }
-
-    // 加速度センサーの開始
-    public void startSensor() {
-        sensorValues = null;
-
-        SensorManager sensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
-        Sensor accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
-    }
-
-    // 加速度センサーの停止
-    public void stopSensor() {
-        SensorManager sensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
-        sensorManager.unregisterListener(this);
+        drawThread = null;
+        return true;
     }
 
     @Override
     public void surfaceCreated(SurfaceHolder holder) {
         startDrawThread();
 
-        startSensor();
+        game.startSensor();
     }
 
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        needsFullRedraw = true;
+
+        game.prefetch(width, height);
     }
 
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
         stopDrawThread();
 
-        stopSensor();
-    }
-
-    private static final float ALPHA = 0.9f;
-    private float[] sensorValues;
-
-    @Override
-    // 加速度センサーの値は、SensorEventListenerのonSensorChangedメソッドで受け取る
-    public void onSensorChanged(SensorEvent event) {
-        if (sensorValues == null) {
-            // 初めてセンサーの値を受け取ったときに、sensorValues配列を初期化する
-            sensorValues = new float[3];
-            sensorValues[0] = event.values[0];
-            sensorValues[1] = event.values[1];
-            sensorValues[2] = event.values[2];
-            return;
-        }
-
-        // センサーの値が更新された場合に、現在の値をそのまま書き換えるのではなく、
-        // 現在の値と、変化後の値を特定の割合で混ぜ合わせることで、急激な変化を抑制する
-        sensorValues[0] = sensorValues[0] * ALPHA + event.values[0] * (1f - ALPHA);
-        sensorValues[1] = sensorValues[1] * ALPHA + event.values[1] * (1f - ALPHA);
-        sensorValues[2] = sensorValues[2] * ALPHA + event.values[2] * (1f - ALPHA);
+        game.stopSensor();
 
-        // センサーとボールの位置の連動を、Ballクラスのmoveメソッドに置き換える
-        if (ball != null) {
-            ball.move(-sensorValues[0] * ACCEL_WEIGHT, sensorValues[1] * ACCEL_WEIGHT);
-        }
+        game.releaseCache();
+        needsFullRedraw = true;
     }
-
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-    }
-
 }
@@ -1,32 +1,41 @@
 package jp.sys_link.labyrinth;
 
 import android.app.Activity;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.Intent;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.WindowManager;
+import android.widget.FrameLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
 
-public class MainActivity extends Activity implements LabyrinthView.Callback {
+import jp.sys_link.labyrinth.core.EmaFilter;
+import jp.sys_link.labyrinth.core.KalmanFilter;
+import jp.sys_link.labyrinth.core.MazeSolver;
+import jp.sys_link.labyrinth.core.OneEuroFilter;
 
-    private LabyrinthView labyrinthView;
+
+public class MainActivity extends Activity implements LabyrinthGame.Callback {
+
+    private LabyrinthGame game;
+
+    // OpenGL ES 2.0で描画するときのView。使えない端末ではCanvasで描くLabyrinthViewを使い、nullのままにする
+    private LabyrinthGLView glView;
+
+    // ゴール画面。迷路の上に重ねて表示する
+    private View resultView;
 
     private int seed = 0;
 
     boolean isFinished = false;
 
-    private static final String EXTRA_KEY_SEED = "key_seed";
-
-    private static Intent newIntent(Context context, int seed) {
-        Intent intent = new Intent(context, MainActivity.class);
-        intent.putExtra(EXTRA_KEY_SEED, seed);
-        return intent;
-    }
+    private static final String STATE_KEY_SEED = "key_seed";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,26 +43,74 @@ public class MainActivity extends Activity implements LabyrinthView.Callback {
 
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
-        seed = getIntent().getIntExtra(EXTRA_KEY_SEED, 0);
+        if (savedInstanceState != null) {
+            seed = savedInstanceState.getInt(STATE_KEY_SEED, 0);
+        }
+
+        game = new LabyrinthGame(this);
+        game.setSeed(seed);
+        game.setCallback(this);
+
+        View labyrinthView;
+        if (supportsGLES2()) {
+            glView = new LabyrinthGLView(this, game);
+            labyrinthView = glView;
+        } else {
+            labyrinthView = new LabyrinthView(this, game);
+        }
+
+        // ステージが変わってもActivityとSurfaceViewを作り直さないように、
+        // ゴール画面は同じ画面に重ねておき、表示を切り替える
+        FrameLayout root = new FrameLayout(this);
+        root.addView(labyrinthView);
+        resultView = getLayoutInflater().inflate(R.layout.activity_main, root, false);
+        resultView.setVisibility(View.GONE);
+        root.addView(resultView);
+        setContentView(root);
+    }
+
+    private boolean supportsGLES2() {
+        ActivityManager am = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        return am.getDeviceConfigurationInfo().reqGlEsVersion >= 0x20000;
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
 
-        labyrinthView = new LabyrinthView(this);
-        labyrinthView.setSeed(seed);
-        labyrinthView.setCallback(this);
-        setContentView(labyrinthView);
+        outState.putInt(STATE_KEY_SEED, seed);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
 
-        labyrinthView.startSensor();
+        if (glView != null) {
+            glView.onResume();
+        }
+        game.resume();
+        game.startSensor();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
 
-        labyrinthView.stopSensor();
+        if (glView != null) {
+            glView.onPause();
+        }
+        game.pause();
+        game.stopSensor();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // 裏に回ったときやメモリが足りなくなったときは、使い回すために取っておいたBitmapを解放する
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            BitmapPool.getInstance().clear();
+        }
     }
 
     @Override
@@ -72,6 +129,54 @@ public class MainActivity extends Activity implements LabyrinthView.Callback {
         if (id == R.id.action_settings) {
             return true;
         }
+        if (id == R.id.action_large_stage) {
+            // 巨大迷路に切り替えて、今のステージをやり直す
+            item.setChecked(!item.isChecked());
+            game.setLargeStage(item.isChecked());
+            if (!isFinished) {
+                retryStage();
+            }
+            return true;
+        }
+        if (id == R.id.action_record_replay) {
+            // 次のステージから、ゴールか穴に着くまでの操作をファイルに記録する
+            item.setChecked(!item.isChecked());
+            game.setRecordingReplay(item.isChecked());
+            return true;
+        }
+        if (id == R.id.action_show_profiler) {
+            // 描画と物理計算の区間ごとの所要時間を、画面に重ねて表示する
+            item.setChecked(!item.isChecked());
+            game.setProfilerShown(item.isChecked());
+            return true;
+        }
+        if (id == R.id.action_show_hint) {
+            // ゴールへ向かう向きと、ステージの目安時間を表示する
+            item.setChecked(!item.isChecked());
+            game.setHintShown(item.isChecked());
+            return true;
+        }
+        if (id == R.id.action_export_profile) {
+            File file = game.exportProfile(glView != null ? "GLES20" : "Canvas");
+            Toast.makeText(this, "計測結果を保存します: " + file, Toast.LENGTH_LONG).show();
+            return true;
+        }
+        // 加速度センサーの値を滑らかにするフィルタを切り替える
+        if (id == R.id.action_filter_ema) {
+            item.setChecked(true);
+            game.setInputFilter(new EmaFilter());
+            return true;
+        }
+        if (id == R.id.action_filter_one_euro) {
+            item.setChecked(true);
+            game.setInputFilter(new OneEuroFilter());
+            return true;
+        }
+        if (id == R.id.action_filter_kalman) {
+            item.setChecked(true);
+            game.setInputFilter(new KalmanFilter());
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
@@ -82,13 +187,25 @@ public class MainActivity extends Activity implements LabyrinthView.Callback {
         }
         isFinished = true;
 
-        labyrinthView.stopSensor();
-        labyrinthView.stopDrawThread();
-
-        setContentView(R.layout.activity_main);
-
-        TextView tv = (TextView)findViewById(R.id.elapsedTime);
-        tv.setText(String.format("%.2f", labyrinthView.time.getElipseTime()) + "秒");
+        game.stopSensor();
+
+        TextView tv = (TextView) resultView.findViewById(R.id.elapsedTime);
+        tv.setText(String.format("%.2f", game.getFinishSeconds()) + "秒");
+
+        // 巨大迷路では目安時間を求めないので、表示しない
+        TextView par = (TextView) resultView.findViewById(R.id.parTime);
+        int rating = game.getRating();
+        if (rating > 0) {
+            StringBuilder stars = new StringBuilder();
+            for (int i = 0; i < MazeSolver.MAX_RATING; i++) {
+                stars.append(i < rating ? '★' : '☆');
+            }
+            par.setText("目安 " + String.format("%.1f", game.getParSeconds()) + "秒 " + stars);
+            par.setVisibility(View.VISIBLE);
+        } else {
+            par.setVisibility(View.GONE);
+        }
+        resultView.setVisibility(View.VISIBLE);
     }
 
     @Override
@@ -100,28 +217,28 @@ public class MainActivity extends Activity implements LabyrinthView.Callback {
 
         Toast.makeText(this, "Hole!!", Toast.LENGTH_SHORT).show();
 
-        labyrinthView.stopSensor();
-
         retryStage();
-
-        finish();
     }
 
     private void nextStage() {
-        Intent intent = MainActivity.newIntent(this, seed + 1);
-        startActivity(intent);
+        seed++;
+        startStage();
     }
 
     private void retryStage() {
-        Intent intent = MainActivity.newIntent(this, seed);
-        startActivity(intent);
+        startStage();
+    }
+
+    private void startStage() {
+        isFinished = false;
+        game.startStage(seed);
     }
 
     public void nextStageButton(View view) {
-        nextStage();
+        resultView.setVisibility(View.GONE);
 
-        finish();
-        labyrinthView.time.start();
+        nextStage();
 
+        game.startSensor();
     }
 }
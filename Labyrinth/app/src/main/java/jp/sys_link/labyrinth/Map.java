@@ -1,202 +1,178 @@
 package jp.sys_link.labyrinth;
 
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 
-public class Map implements Ball.OnMoveListener {
+import jp.sys_link.labyrinth.core.BlockMap;
+import jp.sys_link.labyrinth.core.BlockSource;
+import jp.sys_link.labyrinth.core.LabyrinthGenerator;
+
+// 迷路の描画を行う。当たり判定やゴール・穴の判定はBlockMapが行う
+public class Map {
+
+    // 床のタイプを定数宣言、０で初期化
+    private static final int TYPE_FLOOR = LabyrinthGenerator.FLOOR;
+    // 壁のタイプを定数宣言、１で初期化
+    private static final int TYPE_WALL = LabyrinthGenerator.WALL;
+    private static final int TYPE_START = LabyrinthGenerator.START;
+    private static final int TYPE_GOAL = LabyrinthGenerator.GOAL;
+    private static final int TYPE_HOLE = LabyrinthGenerator.HOLE;
+
+    // 床オブジェクトの生成
+    private static final Paint PAINT_FLOOR = new Paint();
+    // 壁オブジェクトの生成
+    private static final Paint PAINT_WALL = new Paint();
+    private static final Paint PAINT_START = new Paint();
+    private static final Paint PAINT_GOAL = new Paint();
+    private static final Paint PAINT_HOLE = new Paint();
+
+    static {
+        // 床の描画色の設定(シアン色)
+        PAINT_FLOOR.setColor(Color.CYAN);
+        // 壁の描画色の設定(ブラック色)
+        PAINT_WALL.setColor(Color.BLACK);
+        PAINT_START.setColor(Color.GREEN);
+        PAINT_GOAL.setColor(Color.RED);
+        PAINT_HOLE.setColor(Color.rgb(32, 32, 32));
+    }
 
-    // ブロックサイズの変数宣言
-    private int blockSize;
-    private final int stageSeed;
+    private final BlockMap blockMap;
 
-    private int horizontalBlockNum;
-    private int verticalBlockNum;
+    // ステージ中に変化しない壁や床を事前に描画しておくビットマップ
+    private Bitmap mapCache;
 
-    private Block[][] block;
+    // キャッシュを作ったときの描画サイズ。大きさが変われば作り直す
+    private int cacheWidth;
+    private int cacheHeight;
 
-    private final Block[][] targetBlock = new Block[3][3];
-    private Block startBlock;
+    // キャッシュから転送する範囲。描画スレッドだけが使う
+    private final Rect cacheRect = new Rect();
 
-    public Block getStartBlock() {
-        return startBlock;
+    // 生成済みの迷路とブロックサイズを受け取り、マップを作る
+    // 縦横のブロック数は、表示する大きさからBlockMap.toBlockNumで計算しておく
+    public Map(LabyrinthGenerator.MapResult map, int bs, BlockMap.Callback cb) {
+        blockMap = new BlockMap(map, bs, cb);
     }
 
-    private LabyrinthView.Callback callback;
-
-    // マップを表示する大きさ(横幅、高さ)とブロックサイズを受け取り、
-    // 縦横のブロック数を計算したあと、マップを生成する
-    public Map(int w, int h, int bs, LabyrinthView.Callback cb, int seed) {
-        blockSize = bs;
-        horizontalBlockNum = w / blockSize;
-        verticalBlockNum = h / blockSize;
-        callback = cb;
-        stageSeed = seed;
-
-        // 縦横のブロック数が偶数であれば１を減算して奇数にする
-        // 迷路生成アルゴリズムでマップを生成する場合、
-        // 奇数個でないと正しくマップを生成できないため
-        if (horizontalBlockNum % 2 == 0) {
-            horizontalBlockNum--;
-        }
-        if (verticalBlockNum % 2 == 0) {
-            verticalBlockNum--;
-        }
-
-        createMap();
+    // 画面より大きな迷路など、任意のBlockSourceからマップを作る
+    public Map(BlockSource blocks, int startX, int startY, int bs, BlockMap.Callback cb) {
+        blockMap = new BlockMap(blocks, startX, startY, bs, cb);
     }
 
-    private void createMap() {
-
-        LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(stageSeed, horizontalBlockNum, verticalBlockNum);
-
-        block = new Block[verticalBlockNum][horizontalBlockNum];
-        for (int y = 0; y < verticalBlockNum; y++) {
-            for (int x = 0; x < horizontalBlockNum; x++) {
-                int type = map.result[y][x];
-                int left = x * blockSize + 1;
-                int top = y * blockSize + 1;
-                int right = left + blockSize - 2;
-                int bottom = top + blockSize - 2;
-                block[y][x] = new Block(type, left, top, right, bottom);
-            }
-        }
-        startBlock = block[map.startY][map.startX];
+    // ボールの当たり判定に使う
+    public BlockMap getBlockMap() {
+        return blockMap;
     }
 
-    // 全てのBlockを描画する
-    void drawMap(Canvas canvas) {
-        for (int y = 0; y < verticalBlockNum; y++) {
-            for (int x = 0; x < horizontalBlockNum; x++) {
-                block[y][x].draw(canvas);
-            }
-        }
+    // スタートブロックの左上の座標
+    public int getStartLeft() {
+        return blockMap.getStartLeft();
     }
 
-    @Override
-    public boolean canMove(int left, int top, int right, int bottom) {
-        // ボールの現在位置から、ボールがあるブロックの縦と横の位置を計算する
-        int verticalBlock = top / blockSize;
-        int horizontalBlock = left / blockSize;
-
-        // 検索対象のブロックを設定
-        seTargetBlock(verticalBlock, horizontalBlock);
-
-        int yLen = targetBlock.length;
-        int xLen = targetBlock[0].length;
+    public int getStartTop() {
+        return blockMap.getStartTop();
+    }
 
-        for (int y = 0; y < yLen; y++) {
-            for (int x = 0; x < xLen; x++) {
-                if (targetBlock[y][x] == null) {
-                    continue;
-                }
-                if (targetBlock[y][x].type == Block.TYPE_WALL
-                        && targetBlock[y][x].rect.intersects(left, top, right, bottom)) {
-                    return false;
-                } else if (targetBlock[y][x].type == Block.TYPE_GOAL
-                        && targetBlock[y][x].rect.contains(left, top, right, bottom)) {
-                    callback.onGoal();
-                    return true;
-                } else if (targetBlock[y][x].type == Block.TYPE_HOLE) {
-
-                    int ballCenterX = left + (right - left) / 2;
-                    int ballCenterY = top + (bottom - top) / 2;
-
-                    int distanceX = targetBlock[y][x].rect.centerX() - ballCenterX;
-                    int distanceY = targetBlock[y][x].rect.centerY() - ballCenterY;
-
-                    double distance = Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2));
-
-                    // 穴に落ちる判定
-                    if (distance < blockSize / 2) {
-                        callback.onHole();
-                    }
-                }
-            }
-        }
-        return true;
+    // 迷路全体の大きさ(px)
+    public int getPixelWidth() {
+        return blockMap.getPixelWidth();
     }
 
-    private void seTargetBlock(int verticalBlock, int horizontalBlock) {
-        targetBlock[1][1] = getBlock(verticalBlock, horizontalBlock);
+    public int getPixelHeight() {
+        return blockMap.getPixelHeight();
+    }
 
-        targetBlock[0][0] = getBlock(verticalBlock - 1, horizontalBlock - 1);
-        targetBlock[0][1] = getBlock(verticalBlock - 1, horizontalBlock);
-        targetBlock[0][2] = getBlock(verticalBlock - 1, horizontalBlock + 1);
+    // 静的なマップを描画サイズのビットマップに描画しておく
+    // サーフェスの大きさが変わるたびに作り直す
+    // 画面に収まらない迷路はスクロールするので、キャッシュを作らず見えている部分だけを描画する
+    private void buildCache(int width, int height) {
+        releaseCache();
+        cacheWidth = width;
+        cacheHeight = height;
 
-        targetBlock[1][0] = getBlock(verticalBlock, horizontalBlock - 1);
-        targetBlock[1][2] = getBlock(verticalBlock, horizontalBlock + 1);
+        if (getPixelWidth() > width || getPixelHeight() > height) {
+            return;
+        }
 
-        targetBlock[2][0] = getBlock(verticalBlock + 1, horizontalBlock - 1);
-        targetBlock[2][1] = getBlock(verticalBlock + 1, horizontalBlock);
-        targetBlock[2][2] = getBlock(verticalBlock + 1, horizontalBlock + 1);
+        // 不透明なので、アルファのないRGB_565でメモリを半分にする
+        // 前のステージのキャッシュが同じ大きさで残っていれば、作り直さずに上から描く
+        mapCache = BitmapPool.getInstance().get(width, height, Bitmap.Config.RGB_565);
+        drawBlocks(new Canvas(mapCache), new Rect(0, 0, width, height));
     }
 
-    private Block getBlock(int y, int x) {
-        if (y < 0 || x < 0 || y >= verticalBlockNum || x >= horizontalBlockNum) {
-            return null;
+    // キャッシュしたビットマップを、次のステージで使い回せるようにBitmapPoolに返す
+    void releaseCache() {
+        if (mapCache != null) {
+            BitmapPool.getInstance().put(mapCache);
+            mapCache = null;
         }
-        return block[y][x];
+        cacheWidth = 0;
+        cacheHeight = 0;
     }
 
-    static class Block {
-
-        // 床のタイプを定数宣言、０で初期化
-        private static final int TYPE_FLOOR = 0;
-        // 壁のタイプを定数宣言、１で初期化
-        private static final int TYPE_WALL = 1;
-        private static final int TYPE_START = 2;
-        private static final int TYPE_GOAL = 3;
-        private static final int TYPE_HOLE = 4;
-
-        // 床オブジェクトの生成
-        private static final Paint PAINT_FLOOR = new Paint();
-        // 壁オブジェクトの生成
-        private static final Paint PAINT_WALL = new Paint();
-        private static final Paint PAINT_START = new Paint();
-        private static final Paint PAINT_GOAL = new Paint();
-        private static final Paint PAINT_HOLE = new Paint();
-
-        static {
-            // 床の描画色の設定(シアン色)
-            PAINT_FLOOR.setColor(Color.CYAN);
-            // 壁の描画色の設定(ブラック色)
-            PAINT_WALL.setColor(Color.BLACK);
-            PAINT_START.setColor(Color.GREEN);
-            PAINT_GOAL.setColor(Color.RED);
-            PAINT_HOLE.setColor(Color.rgb(32, 32, 32));
+    // viewport(迷路の座標系)に重なる部分だけを描画する。canvasは迷路の座標系に合わせて平行移動しておく
+    // キャッシュがあればその範囲だけを転送し、なければ範囲に重なるBlockだけを描画する
+    void drawMap(Canvas canvas, Rect viewport) {
+        if (canvas.getWidth() != cacheWidth || canvas.getHeight() != cacheHeight) {
+            buildCache(canvas.getWidth(), canvas.getHeight());
         }
 
-        private final int type;
-
-        final Rect rect;
-
-        private Block(int type, int left, int top, int right, int bottom) {
-            this.type = type;
-            rect = new Rect(left, top, right, bottom);
+        if (mapCache != null) {
+            cacheRect.set(viewport);
+            if (cacheRect.intersect(0, 0, mapCache.getWidth(), mapCache.getHeight())) {
+                canvas.drawBitmap(mapCache, cacheRect, cacheRect, null);
+            }
+        } else {
+            drawBlocks(canvas, viewport);
         }
+    }
 
-        private Paint getPaint() {
-            switch (type) {
-                case TYPE_FLOOR:
-                    return PAINT_FLOOR;
-                case TYPE_START:
-                    return PAINT_START;
-                case TYPE_GOAL:
-                    return PAINT_GOAL;
-                case TYPE_WALL:
-                    return PAINT_WALL;
-                case TYPE_HOLE:
-                    return PAINT_HOLE;
-
+    // 背景と、viewportに重なるBlockを描画する
+    private void drawBlocks(Canvas canvas, Rect viewport) {
+        canvas.drawColor(Color.BLACK);
+
+        BlockSource blocks = blockMap.getBlocks();
+        int blockSize = blockMap.getBlockSize();
+        int firstX = Math.max(viewport.left / blockSize, 0);
+        int firstY = Math.max(viewport.top / blockSize, 0);
+        int lastX = Math.min((viewport.right - 1) / blockSize, blocks.getWidth() - 1);
+        int lastY = Math.min((viewport.bottom - 1) / blockSize, blocks.getHeight() - 1);
+
+        for (int y = firstY; y <= lastY; y++) {
+            int blockTop = blockMap.blockTop(y);
+            int blockBottom = blockMap.blockBottom(y);
+            for (int x = firstX; x <= lastX; x++) {
+                Paint paint = getPaint(blocks.get(x, y));
+                if (paint != null) {
+                    canvas.drawRect(blockMap.blockLeft(x), blockTop, blockMap.blockRight(x), blockBottom, paint);
+                }
             }
-            return null;
         }
+    }
+
+    // ブロックの種別ごとの色。Canvas以外で描画するときに使う。描画しない種別は背景と同じ黒にする
+    static int getColor(int type) {
+        Paint paint = getPaint(type);
+        return paint != null ? paint.getColor() : Color.BLACK;
+    }
 
-        private void draw(Canvas canvas) {
-            canvas.drawRect(rect, getPaint());
+    private static Paint getPaint(int type) {
+        switch (type) {
+            case TYPE_FLOOR:
+                return PAINT_FLOOR;
+            case TYPE_START:
+                return PAINT_START;
+            case TYPE_GOAL:
+                return PAINT_GOAL;
+            case TYPE_WALL:
+                return PAINT_WALL;
+            case TYPE_HOLE:
+                return PAINT_HOLE;
 
         }
+        return null;
     }
 }
@@ -0,0 +1,85 @@
+package jp.sys_link.labyrinth;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import jp.sys_link.labyrinth.core.Profiler;
+
+// 区間ごとの所要時間を、端末の情報と一緒にテキストファイルに書き出す
+// ReplayStoreと同じくアプリ用の外部ストレージ(Android/data/<パッケージ名>/files/profiles)に置くので、
+// adb pullで取り出して不具合の報告に添付できる
+class ProfileStore {
+
+    private static final String TAG = "ProfileStore";
+
+    private final File directory;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ProfileStore");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    ProfileStore(Context context) {
+        File base = context.getExternalFilesDir(null);
+        if (base == null) {
+            // 外部ストレージが使えないときは、内部ストレージに書き出す
+            base = context.getFilesDir();
+        }
+        directory = new File(base, "profiles");
+    }
+
+    // 呼び出した時点の計測結果を書き出す。書き出しは別のスレッドで行い、書き出す先のファイルを返す
+    File save(Profiler profiler, String rendererName) {
+        final File file = new File(directory, "profile-" + System.currentTimeMillis() + ".csv");
+
+        // 書き出している間も計測は続くので、先に文字列にしておく
+        final StringWriter report = new StringWriter();
+        report.write("# " + Build.MANUFACTURER + " " + Build.MODEL + ", API " + Build.VERSION.SDK_INT
+                + ", renderer " + rendererName + "\n");
+        try {
+            profiler.writeReport(report);
+        } catch (IOException e) {
+            // StringWriterへの書き込みは失敗しない
+            throw new IllegalStateException(e);
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    Log.w(TAG, "cannot create " + directory);
+                    return;
+                }
+                try {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+                    try {
+                        out.write(report.toString());
+                    } finally {
+                        out.close();
+                    }
+                    Log.d(TAG, "saved " + file);
+                } catch (IOException e) {
+                    Log.w(TAG, "cannot save " + file, e);
+                }
+            }
+        });
+        return file;
+    }
+}
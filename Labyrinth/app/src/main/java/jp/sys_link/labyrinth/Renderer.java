@@ -0,0 +1,23 @@
+package jp.sys_link.labyrinth;
+
+import android.graphics.Bitmap;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+// 迷路、ボール、経過時間の表示を描画する。LabyrinthGameはこのインターフェースだけを通して描画する
+// Canvasで描くCanvasRendererと、OpenGL ES 2.0で描くGLRendererがある
+interface Renderer {
+
+    // 迷路の座標系で(cameraX, cameraY)の位置が、画面の左上に来るようにする
+    void setCamera(int cameraX, int cameraY);
+
+    // 迷路のうち、画面に映る部分を描画する
+    void drawMap(Map map);
+
+    // ボールの画像を、迷路の座標系の矩形rectに合わせて描画する
+    void drawBall(Bitmap bitmap, Rect rect);
+
+    // 経過時間などの文字列のうち、先頭からcount文字を画面の座標系で描画する。(x, y)はベースラインの左端
+    // 毎フレーム呼ぶので、Stringを作らずに済むようにchar[]で受け取る
+    void drawText(char[] text, int count, int x, int y, Paint paint);
+}
@@ -0,0 +1,69 @@
+package jp.sys_link.labyrinth;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import jp.sys_link.labyrinth.core.Replay;
+
+// 記録したリプレイを、バックグラウンドのスレッドでファイルに書き出す
+// アプリ用の外部ストレージ(Android/data/<パッケージ名>/files/replays)に置くので、adb pullで取り出して
+// ReplayRunnerで再生できる
+class ReplayStore {
+
+    private static final String TAG = "ReplayStore";
+
+    private final File directory;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ReplayStore");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    ReplayStore(Context context) {
+        File base = context.getExternalFilesDir(null);
+        if (base == null) {
+            // 外部ストレージが使えないときは、内部ストレージに書き出す
+            base = context.getFilesDir();
+        }
+        directory = new File(base, "replays");
+    }
+
+    // 描画スレッドを待たせないように、書き出しは別のスレッドで行う
+    void save(final Replay replay) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    Log.w(TAG, "cannot create " + directory);
+                    return;
+                }
+                File file = new File(directory, "stage" + replay.seed + "-" + System.currentTimeMillis() + ".lbrp");
+                try {
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                    try {
+                        replay.write(out);
+                    } finally {
+                        out.close();
+                    }
+                    Log.d(TAG, "saved " + file + " (" + file.length() + " bytes)");
+                } catch (IOException e) {
+                    Log.w(TAG, "cannot save " + file, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package jp.sys_link.labyrinth.core;
+
+// ベンチマークのパラメータ "横x縦" を、ブロック数に変換する
+final class BenchmarkSizes {
+
+    private BenchmarkSizes() {
+    }
+
+    static int[] parse(String size) {
+        int separator = size.indexOf('x');
+        return new int[]{
+                Integer.parseInt(size.substring(0, separator)),
+                Integer.parseInt(size.substring(separator + 1))
+        };
+    }
+}
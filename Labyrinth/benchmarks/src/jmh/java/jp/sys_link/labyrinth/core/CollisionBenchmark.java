@@ -0,0 +1,294 @@
+package jp.sys_link.labyrinth.core;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// BlockMap.canMoveとBallBody.moveを、傾きを模した移動量の列で計測する
+// canMoveRectScanは、周囲８ブロックの矩形を毎回作って調べていた以前のcanMoveとの比較用
+// moveTraceRetryLoopは、1pxずつ移動量を減らして再試行する従来の方法との比較用
+// moveTraceCallsとmoveTraceRetryLoopCallsは、同じ移動をリスナーの呼び出し回数を数えながら行う
+// 呼び出し回数と移動の回数はどちらも秒あたりで出るので、canMove / moves と sweep / moves が移動１回あたりの回数になる
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final int BLOCK_SIZE = 40;
+
+    private static final float BALL_SCALE = 0.8f;
+
+    private static final int TRACE_LENGTH = 1024;
+
+    private static final BlockMap.Callback NO_CALLBACK = new BlockMap.Callback() {
+        @Override
+        public void onGoal() {
+        }
+
+        @Override
+        public void onHole() {
+        }
+    };
+
+    @Param({"21x37", "101x101"})
+    public String size;
+
+    // １ステップの移動量の最大値(px)
+    @Param({"3", "30"})
+    public float maxOffset;
+
+    private BlockMap blockMap;
+    private BlockGrid grid;
+
+    private final float[] traceX = new float[TRACE_LENGTH];
+    private final float[] traceY = new float[TRACE_LENGTH];
+
+    private final int[] probeLeft = new int[TRACE_LENGTH];
+    private final int[] probeTop = new int[TRACE_LENGTH];
+
+    private BallBody sweepBody;
+    private BallBody retryBody;
+
+    private int ballSize;
+
+    // 呼び出し回数を数えるリスナーを通したボール
+    private BallBody countingSweepBody;
+    private BallBody countingRetryBody;
+    private SweepCalls sweepCalls;
+    private RetryCalls retryCalls;
+
+    // sweepを使う移動での、リスナーの呼び出し回数と移動の回数
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class SweepCalls {
+        public long canMove;
+        public long sweep;
+        public long moves;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            canMove = 0;
+            sweep = 0;
+            moves = 0;
+        }
+    }
+
+    // 再試行ループでの、canMoveの呼び出し回数と移動の回数
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class RetryCalls {
+        public long canMove;
+        public long moves;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            canMove = 0;
+            moves = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        int[] blockNum = BenchmarkSizes.parse(size);
+        LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(0, blockNum[0], blockNum[1]);
+        blockMap = new BlockMap(map, BLOCK_SIZE, NO_CALLBACK);
+        grid = map.grid;
+        ballSize = Math.round(BLOCK_SIZE * BALL_SCALE);
+
+        // 傾きはなめらかに変わるので、ランダムウォークで移動量の列を作る
+        Random rand = new Random(1);
+        float x = 0;
+        float y = 0;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            x = clamp(x + (rand.nextFloat() - 0.5f) * maxOffset * 0.2f);
+            y = clamp(y + (rand.nextFloat() - 0.5f) * maxOffset * 0.2f);
+            traceX[i] = x;
+            traceY[i] = y;
+        }
+
+        // canMoveは、実際にボールが通る位置で問い合わせる
+        resetBall();
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            sweepBody.move(traceX[i], traceY[i]);
+            probeLeft[i] = sweepBody.getLeft();
+            probeTop[i] = sweepBody.getTop();
+        }
+    }
+
+    private float clamp(float value) {
+        return Math.max(-maxOffset, Math.min(maxOffset, value));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetBall() {
+        sweepBody = new BallBody(blockMap.getStartLeft(), blockMap.getStartTop(), ballSize, ballSize);
+        sweepBody.setOnMoveListener(blockMap);
+
+        // OnSweepListenerを隠して、従来の再試行ループを通す
+        retryBody = new BallBody(blockMap.getStartLeft(), blockMap.getStartTop(), ballSize, ballSize);
+        retryBody.setOnMoveListener(new BallBody.OnMoveListener() {
+            @Override
+            public boolean canMove(int left, int top, int right, int bottom) {
+                return blockMap.canMove(left, top, right, bottom);
+            }
+        });
+
+        countingSweepBody = new BallBody(blockMap.getStartLeft(), blockMap.getStartTop(), ballSize, ballSize);
+        countingSweepBody.setOnMoveListener(new BallBody.OnSweepListener() {
+            @Override
+            public int sweepHorizontal(int left, int top, int right, int bottom, int xOffset) {
+                sweepCalls.sweep++;
+                return blockMap.sweepHorizontal(left, top, right, bottom, xOffset);
+            }
+
+            @Override
+            public int sweepVertical(int left, int top, int right, int bottom, int yOffset) {
+                sweepCalls.sweep++;
+                return blockMap.sweepVertical(left, top, right, bottom, yOffset);
+            }
+
+            @Override
+            public boolean canMove(int left, int top, int right, int bottom) {
+                sweepCalls.canMove++;
+                return blockMap.canMove(left, top, right, bottom);
+            }
+        });
+
+        countingRetryBody = new BallBody(blockMap.getStartLeft(), blockMap.getStartTop(), ballSize, ballSize);
+        countingRetryBody.setOnMoveListener(new BallBody.OnMoveListener() {
+            @Override
+            public boolean canMove(int left, int top, int right, int bottom) {
+                retryCalls.canMove++;
+                return blockMap.canMove(left, top, right, bottom);
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACE_LENGTH)
+    public int canMove() {
+        int movable = 0;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            int left = probeLeft[i];
+            int top = probeTop[i];
+            if (blockMap.canMove(left, top, left + ballSize, top + ballSize)) {
+                movable++;
+            }
+        }
+        return movable;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACE_LENGTH)
+    public int canMoveRectScan() {
+        int movable = 0;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            int left = probeLeft[i];
+            int top = probeTop[i];
+            if (canMoveByRectScan(left, top, left + ballSize, top + ballSize)) {
+                movable++;
+            }
+        }
+        return movable;
+    }
+
+    // 以前のcanMove。ボールがあるブロックと周囲８ブロックの矩形を毎回作り、Rect.intersectsと同じ条件で調べる
+    // BlockMapTestの参照実装と同じもの
+    private boolean canMoveByRectScan(int left, int top, int right, int bottom) {
+        int verticalBlock = top / BLOCK_SIZE;
+        int horizontalBlock = left / BLOCK_SIZE;
+
+        for (int y = verticalBlock - 1; y <= verticalBlock + 1; y++) {
+            for (int x = horizontalBlock - 1; x <= horizontalBlock + 1; x++) {
+                if (!grid.contains(x, y)) {
+                    continue;
+                }
+                int type = grid.get(x, y);
+                int blockLeft = x * BLOCK_SIZE + 1;
+                int blockTop = y * BLOCK_SIZE + 1;
+                int blockRight = blockLeft + BLOCK_SIZE - 2;
+                int blockBottom = blockTop + BLOCK_SIZE - 2;
+
+                if (type == LabyrinthGenerator.WALL
+                        && blockLeft < right && left < blockRight && blockTop < bottom && top < blockBottom) {
+                    return false;
+                } else if (type == LabyrinthGenerator.GOAL
+                        && blockLeft <= left && blockTop <= top && blockRight >= right && blockBottom >= bottom) {
+                    NO_CALLBACK.onGoal();
+                    return true;
+                } else if (type == LabyrinthGenerator.HOLE) {
+                    int ballCenterX = left + (right - left) / 2;
+                    int ballCenterY = top + (bottom - top) / 2;
+
+                    int distanceX = (blockLeft + blockRight) / 2 - ballCenterX;
+                    int distanceY = (blockTop + blockBottom) / 2 - ballCenterY;
+
+                    double distance = Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2));
+                    if (distance < BLOCK_SIZE / 2) {
+                        NO_CALLBACK.onHole();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACE_LENGTH)
+    public int moveTrace() {
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            sweepBody.move(traceX[i], traceY[i]);
+        }
+        return sweepBody.getLeft() + sweepBody.getTop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACE_LENGTH)
+    public int moveTraceRetryLoop() {
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            retryBody.move(traceX[i], traceY[i]);
+        }
+        return retryBody.getLeft() + retryBody.getTop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int moveTraceCalls(SweepCalls calls) {
+        sweepCalls = calls;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            countingSweepBody.move(traceX[i], traceY[i]);
+        }
+        calls.moves += TRACE_LENGTH;
+        return countingSweepBody.getLeft() + countingSweepBody.getTop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int moveTraceRetryLoopCalls(RetryCalls calls) {
+        retryCalls = calls;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            countingRetryBody.move(traceX[i], traceY[i]);
+        }
+        calls.moves += TRACE_LENGTH;
+        return countingRetryBody.getLeft() + countingRetryBody.getTop();
+    }
+}
@@ -0,0 +1,41 @@
+package jp.sys_link.labyrinth.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// ゴールを決めるための、スタートからの距離の計算だけを計測する
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GoalDistanceBenchmark {
+
+    @Param({"21x37", "101x101", "501x501", "2001x2001"})
+    public String size;
+
+    private LabyrinthGenerator.MapResult map;
+
+    @Setup
+    public void setUp() {
+        int[] blockNum = BenchmarkSizes.parse(size);
+        map = LabyrinthGenerator.getMap(0, blockNum[0], blockNum[1]);
+    }
+
+    @Benchmark
+    public int[] calcStep() {
+        return LabyrinthGenerator.calcStep(map.grid, map.startY, map.startX);
+    }
+}
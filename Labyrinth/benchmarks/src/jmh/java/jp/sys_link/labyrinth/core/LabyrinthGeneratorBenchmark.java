@@ -0,0 +1,47 @@
+package jp.sys_link.labyrinth.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// LabyrinthGenerator.getMapで、迷路全体を生成する時間を計測する
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LabyrinthGeneratorBenchmark {
+
+    // 横x縦のブロック数。スマートフォンの画面サイズから、2001x2001の巨大な迷路まで
+    @Param({"21x37", "41x73", "101x101", "501x501", "2001x2001"})
+    public String size;
+
+    @Param({"0", "9"})
+    public int seed;
+
+    private int horizontalBlockNum;
+    private int verticalBlockNum;
+
+    @Setup
+    public void setUp() {
+        int[] blockNum = BenchmarkSizes.parse(size);
+        horizontalBlockNum = blockNum[0];
+        verticalBlockNum = blockNum[1];
+    }
+
+    @Benchmark
+    public LabyrinthGenerator.MapResult getMap() {
+        return LabyrinthGenerator.getMap(seed, horizontalBlockNum, verticalBlockNum);
+    }
+}
@@ -0,0 +1,72 @@
+package jp.sys_link.labyrinth.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// MazeAlgorithmごとに、迷路の壁と通路を作る速さを比べる
+// 穴やゴールの設定は含めず、同じグリッドに作り直す。作業用の配列の大きさはgcプロファイラの
+// gc.alloc.rate.norm(1回あたりの確保量)で比べる
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MazeAlgorithmBenchmark {
+
+    @Param({"poleKnocking", "recursiveBacktracker", "eller", "wilson", "kruskal"})
+    public String algorithm;
+
+    @Param({"21x37", "101x101", "501x501", "2001x2001"})
+    public String size;
+
+    private MazeAlgorithm mazeAlgorithm;
+    private BlockGrid grid;
+    private final Random rand = new Random();
+
+    @Setup
+    public void setUp() {
+        int[] blockNum = BenchmarkSizes.parse(size);
+        grid = new BlockGrid(blockNum[0], blockNum[1]);
+
+        switch (algorithm) {
+            case "poleKnocking":
+                mazeAlgorithm = new PoleKnockingAlgorithm();
+                break;
+            case "recursiveBacktracker":
+                mazeAlgorithm = new RecursiveBacktrackerAlgorithm();
+                break;
+            case "eller":
+                mazeAlgorithm = new EllerAlgorithm();
+                break;
+            case "wilson":
+                mazeAlgorithm = new WilsonAlgorithm();
+                break;
+            case "kruskal":
+                mazeAlgorithm = new KruskalAlgorithm();
+                break;
+            default:
+                throw new IllegalArgumentException("不明なアルゴリズムです: " + algorithm);
+        }
+    }
+
+    @Benchmark
+    public BlockGrid generate() {
+        // 毎回同じ迷路を作るように、シードを戻す
+        rand.setSeed(0);
+        mazeAlgorithm.generate(grid, rand);
+        return grid;
+    }
+}
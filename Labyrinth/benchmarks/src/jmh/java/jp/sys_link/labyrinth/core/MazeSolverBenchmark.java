@@ -0,0 +1,122 @@
+package jp.sys_link.labyrinth.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// MazeSolverの問い合わせを計測する
+// hintとdistanceは物理計算のたびに呼ぶ問い合わせで、床のブロックを順に変えながら１回あたりの時間を求める
+// findPathとfindPathBidirectionalは、床のブロックの組をランダムに選んで１回あたりの時間を求める
+// buildは、ステージごとに一度だけ行うゴールからの距離の計算
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MazeSolverBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    private static final int PAIR_COUNT = 16;
+
+    @Param({"21x37", "101x101", "501x501", "2001x2001"})
+    public String size;
+
+    private LabyrinthGenerator.MapResult map;
+    private MazeSolver solver;
+
+    private final int[] queryX = new int[QUERY_COUNT];
+    private final int[] queryY = new int[QUERY_COUNT];
+
+    private final int[] pairs = new int[PAIR_COUNT * 4];
+
+    @Setup
+    public void setUp() {
+        int[] blockNum = BenchmarkSizes.parse(size);
+        map = LabyrinthGenerator.getMap(0, blockNum[0], blockNum[1]);
+        solver = new MazeSolver(map.grid);
+
+        // 問い合わせるブロックは、ボールが通る床から選ぶ
+        Random rand = new Random(1);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            int[] position = randomFloor(rand, blockNum);
+            queryX[i] = position[0];
+            queryY[i] = position[1];
+        }
+        for (int i = 0; i < PAIR_COUNT * 2; i++) {
+            int[] position = randomFloor(rand, blockNum);
+            pairs[i * 2] = position[0];
+            pairs[i * 2 + 1] = position[1];
+        }
+    }
+
+    private int[] randomFloor(Random rand, int[] blockNum) {
+        while (true) {
+            int x = rand.nextInt(blockNum[0]);
+            int y = rand.nextInt(blockNum[1]);
+            if (solver.getDistance(x, y) >= 0) {
+                return new int[]{x, y};
+            }
+        }
+    }
+
+    @Benchmark
+    public MazeSolver build() {
+        return new MazeSolver(map.grid);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int hint() {
+        int sum = 0;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            LabyrinthGenerator.Direction direction = solver.getHint(queryX[i], queryY[i]);
+            sum += direction == null ? 0 : direction.ordinal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int distance() {
+        int sum = 0;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            sum += solver.getDistance(queryX[i], queryY[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIR_COUNT)
+    public int findPath() {
+        int sum = 0;
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            sum += solver.findPath(pairs[i * 4], pairs[i * 4 + 1], pairs[i * 4 + 2], pairs[i * 4 + 3]).length;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIR_COUNT)
+    public int findPathBidirectional() {
+        int sum = 0;
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            sum += solver.findPathBidirectional(
+                    pairs[i * 4], pairs[i * 4 + 1], pairs[i * 4 + 2], pairs[i * 4 + 3]).length;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,86 @@
+package jp.sys_link.labyrinth.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 記録したリプレイを、迷路の生成から結果が出るまで再生する速さ(１コアあたりの再生回数/秒)を計測する
+// 入力は傾きを模したランダムウォークで作り、一度再生して結果を記録しておく
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final int BLOCK_SIZE = 40;
+
+    // 記録する物理計算のステップ数(1分間)
+    private static final int STEP_COUNT = 3000;
+
+    @Param({"21x37", "101x101"})
+    public String size;
+
+    private Replay replay;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] blockNum = BenchmarkSizes.parse(size);
+        int ballSize = Math.round(BLOCK_SIZE * Physics.BALL_SCALE);
+        ReplayRecorder recorder = new ReplayRecorder(0, Replay.STAGE_GENERATED, blockNum[0], blockNum[1],
+                BLOCK_SIZE, ballSize, ballSize);
+
+        // センサーの値は重力加速度の範囲でなめらかに変わる
+        Random rand = new Random(1);
+        float x = 0;
+        float y = 0;
+        for (int step = 1; step <= STEP_COUNT; step++) {
+            x = Math.max(-9.8f, Math.min(9.8f, x + (rand.nextFloat() - 0.5f)));
+            y = Math.max(-9.8f, Math.min(9.8f, y + (rand.nextFloat() - 0.5f)));
+            recorder.record(step, x, y);
+        }
+        Replay recorded = recorder.finish(Replay.OUTCOME_NONE, 0, 0, 0);
+        ReplayRunner.Result result = ReplayRunner.run(recorded);
+
+        // 再生した結果を記録した形にして、ファイルの形式を通しておく
+        recorder = new ReplayRecorder(0, Replay.STAGE_GENERATED, blockNum[0], blockNum[1],
+                BLOCK_SIZE, ballSize, ballSize);
+        for (int i = 0; i < recorded.getInputCount(); i++) {
+            recorder.record(recorded.getStep(i), recorded.getX(i), recorded.getY(i));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.finish(result.outcome, result.outcomeStep, result.finalLeft, result.finalTop).write(out);
+        encoded = out.toByteArray();
+        replay = Replay.read(new ByteArrayInputStream(encoded));
+
+        if (!ReplayRunner.run(replay).matches(replay)) {
+            throw new IllegalStateException("リプレイの結果が再現しません");
+        }
+    }
+
+    @Benchmark
+    public ReplayRunner.Result replay() {
+        return ReplayRunner.run(replay);
+    }
+
+    @Benchmark
+    public Replay decode() throws IOException {
+        return Replay.read(new ByteArrayInputStream(encoded));
+    }
+}
@@ -0,0 +1,19 @@
+package jp.sys_link.labyrinth.core;
+
+// 加速度センサーの値(x, y)を滑らかにするフィルタ
+// サンプルの時刻を使って計算するので、センサーの通知間隔が変わっても同じように応答する
+public interface AccelerationFilter {
+
+    // 途中の値を捨てて、最初のサンプルを待つ状態に戻す
+    public void reset();
+
+    // サンプルを１つ加える。timestampはナノ秒で、古い順に渡す
+    public void update(long timestamp, float x, float y);
+
+    // １つ以上サンプルを受け取ったか
+    public boolean hasValue();
+
+    public float getX();
+
+    public float getY();
+}
@@ -0,0 +1,134 @@
+package jp.sys_link.labyrinth.core;
+
+// ボールの位置と移動を扱う。描画はアプリ側のBallが行う
+public class BallBody {
+
+    // ボールが希望する位置に動くことができるか(壁にぶつからないか)を判定する
+    public interface OnMoveListener {
+        public boolean canMove(int left, int top, int right, int bottom);
+    }
+
+    // 壁にぶつかるまでに動ける移動量を、一度の問い合わせで求める
+    // 戻り値は、offsetと同じ向きで絶対値がoffset以下の移動量
+    public interface OnSweepListener extends OnMoveListener {
+        public int sweepHorizontal(int left, int top, int right, int bottom, int xOffset);
+
+        public int sweepVertical(int left, int top, int right, int bottom, int yOffset);
+    }
+
+    private OnMoveListener listener;
+
+    private int left;
+    private int top;
+    private final int width;
+    private final int height;
+
+    // 直前の物理計算を行う前の位置。描画時に今の位置との間を補間する
+    private int previousLeft;
+    private int previousTop;
+
+    public BallBody(int left, int top, int width, int height) {
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        previousLeft = left;
+        previousTop = top;
+    }
+
+    public void setOnMoveListener(OnMoveListener l) {
+        listener = l;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return left + width;
+    }
+
+    public int getBottom() {
+        return top + height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // alphaは直前の物理計算から次の物理計算までの進み具合(0〜1)
+    public int getDrawLeft(float alpha) {
+        return previousLeft + Math.round((left - previousLeft) * alpha);
+    }
+
+    public int getDrawTop(float alpha) {
+        return previousTop + Math.round((top - previousTop) * alpha);
+    }
+
+    // moveメソッドでボールの位置を変更する
+    public void move(float xOffset, float yOffset) {
+        previousLeft = left;
+        previousTop = top;
+
+        if (listener instanceof OnSweepListener) {
+            sweep((OnSweepListener) listener, Math.round(xOffset), Math.round(yOffset));
+            return;
+        }
+
+        int align = yOffset >= 0 ? 1 : -1;
+        while (!tryMoveVertical(yOffset)) {
+            yOffset -= align;
+        }
+
+        align = xOffset >= 0 ? 1 : -1;
+        while (!tryMoveHorizontal(xOffset)) {
+            xOffset -= align;
+        }
+    }
+
+    // 縦、横の順に、壁に当たる手前まで一度に動かす
+    // 移動の途中にある壁も見るので、速く動いても薄い壁をすり抜けない
+    private void sweep(OnSweepListener sweepListener, int xOffset, int yOffset) {
+        top += sweepListener.sweepVertical(left, top, getRight(), getBottom(), yOffset);
+        // 移動先でゴールや穴の判定を行う
+        sweepListener.canMove(left, top, getRight(), getBottom());
+
+        left += sweepListener.sweepHorizontal(left, top, getRight(), getBottom(), xOffset);
+        sweepListener.canMove(left, top, getRight(), getBottom());
+    }
+
+    // canMoveでそれぞれの方向に移動できるかを試行する
+    // 試行した移動量では特定の方向に動けない場合、移動量を
+    // 減らしながら移動できるまで繰り返す
+    private boolean tryMoveHorizontal(float xOffset) {
+        int left = this.left + Math.round(xOffset);
+        int right = left + width;
+
+        if (!listener.canMove(left, top, right, getBottom())) {
+            return false;
+        }
+
+        this.left = left;
+        return true;
+    }
+
+    private boolean tryMoveVertical(float yOffset) {
+        int top = this.top + Math.round(yOffset);
+        int bottom = top + height;
+
+        if (!listener.canMove(left, top, getRight(), bottom)) {
+            return false;
+        }
+
+        this.top = top;
+        return true;
+    }
+}
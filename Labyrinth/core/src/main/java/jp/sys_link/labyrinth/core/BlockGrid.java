@@ -0,0 +1,59 @@
+package jp.sys_link.labyrinth.core;
+
+// 迷路のブロック種別を行優先の一次元配列で保持するグリッド
+// 生成から当たり判定、描画まで同じインスタンスを使い回す
+public class BlockGrid implements BlockSource {
+
+    private final int width;
+    private final int height;
+
+    private final byte[] blocks;
+
+    public BlockGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        blocks = new byte[width * height];
+    }
+
+    // 横方向のブロック数
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    // 縦方向のブロック数
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    // 一行分の要素数。index = y * stride + x
+    public int getStride() {
+        return width;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    @Override
+    public int get(int x, int y) {
+        return blocks[y * width + x];
+    }
+
+    public int get(int index) {
+        return blocks[index];
+    }
+
+    public void set(int x, int y, int type) {
+        blocks[y * width + x] = (byte) type;
+    }
+
+    public void set(int index, int type) {
+        blocks[index] = (byte) type;
+    }
+}
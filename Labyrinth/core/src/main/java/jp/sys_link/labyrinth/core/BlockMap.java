@@ -0,0 +1,308 @@
+package jp.sys_link.labyrinth.core;
+
+// ブロック単位の迷路を画面上の座標に配置し、ボールとの当たり判定と
+// ゴール・穴の判定を行う
+public class BlockMap implements BallBody.OnSweepListener {
+
+    private static final int TYPE_WALL = LabyrinthGenerator.WALL;
+    private static final int TYPE_GOAL = LabyrinthGenerator.GOAL;
+    private static final int TYPE_HOLE = LabyrinthGenerator.HOLE;
+
+    // ボールがゴールに着いた、穴に落ちたことを通知する
+    public interface Callback {
+        public void onGoal();
+
+        public void onHole();
+    }
+
+    // ブロックサイズの変数宣言
+    private final int blockSize;
+
+    private final int horizontalBlockNum;
+    private final int verticalBlockNum;
+
+    // ブロックの種別だけを保持し、矩形は必要なときに座標とブロックサイズから計算する
+    private final BlockSource blocks;
+
+    private final int startX;
+    private final int startY;
+
+    private final Callback callback;
+
+    // 壁のブロックを１ビットで表したビット列。添字はグリッドと同じ行優先
+    // 必要な部分だけを生成する巨大な迷路では作らず、nullのままにする
+    private final long[] wallBits;
+
+    // ブロックごとに、自分と周囲８ブロックのうち判定が必要なブロック(壁、ゴール、穴)を
+    // ９ビットで表したもの。ビットの順番は左上から行優先で、(dy + 1) * 3 + (dx + 1)
+    // wallBitsと同じく、巨大な迷路ではnullのままにする
+    private final short[] neighborMasks;
+
+    // neighborMasksのビット番号から、中心のブロックとの位置の差を求める表
+    private static final int[] NEIGHBOR_DX = {-1, 0, 1, -1, 0, 1, -1, 0, 1};
+    private static final int[] NEIGHBOR_DY = {-1, -1, -1, 0, 0, 0, 1, 1, 1};
+
+    public BlockMap(LabyrinthGenerator.MapResult map, int blockSize, Callback callback) {
+        this(map.grid, map.startX, map.startY, blockSize, callback);
+    }
+
+    public BlockMap(BlockSource blocks, int startX, int startY, int blockSize, Callback callback) {
+        this.blockSize = blockSize;
+        this.callback = callback;
+        this.blocks = blocks;
+        horizontalBlockNum = blocks.getWidth();
+        verticalBlockNum = blocks.getHeight();
+        this.startY = startY;
+        this.startX = startX;
+
+        if (!(blocks instanceof BlockGrid)) {
+            wallBits = null;
+            neighborMasks = null;
+            return;
+        }
+
+        // ステージの作成時に一度だけ計算し、当たり判定ではビット演算だけで済ませる
+        BlockGrid grid = (BlockGrid) blocks;
+        int blockNum = horizontalBlockNum * verticalBlockNum;
+        wallBits = new long[(blockNum + 63) >> 6];
+        for (int i = 0; i < blockNum; i++) {
+            if (grid.get(i) == TYPE_WALL) {
+                wallBits[i >> 6] |= 1L << i;
+            }
+        }
+        neighborMasks = new short[blockNum];
+        for (int y = 0; y < verticalBlockNum; y++) {
+            for (int x = 0; x < horizontalBlockNum; x++) {
+                neighborMasks[grid.index(x, y)] = (short) calcNeighborMask(x, y);
+            }
+        }
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < horizontalBlockNum && y < verticalBlockNum;
+    }
+
+    private int calcNeighborMask(int centerX, int centerY) {
+        int mask = 0;
+        int bit = 0;
+        for (int y = centerY - 1; y <= centerY + 1; y++) {
+            for (int x = centerX - 1; x <= centerX + 1; x++, bit++) {
+                if (!contains(x, y)) {
+                    continue;
+                }
+                int type = blocks.get(x, y);
+                if (type == TYPE_WALL || type == TYPE_GOAL || type == TYPE_HOLE) {
+                    mask |= 1 << bit;
+                }
+            }
+        }
+        return mask;
+    }
+
+    private boolean isWall(int x, int y) {
+        if (wallBits == null) {
+            return blocks.get(x, y) == TYPE_WALL;
+        }
+        int index = y * horizontalBlockNum + x;
+        return (wallBits[index >> 6] & (1L << index)) != 0;
+    }
+
+    // 表示する大きさとブロックサイズから、縦または横のブロック数を計算する
+    public static int toBlockNum(int size, int blockSize) {
+        int blockNum = size / blockSize;
+
+        // ブロック数が偶数であれば１を減算して奇数にする
+        // 迷路生成アルゴリズムでマップを生成する場合、
+        // 奇数個でないと正しくマップを生成できないため
+        if (blockNum % 2 == 0) {
+            blockNum--;
+        }
+        return blockNum;
+    }
+
+    public BlockSource getBlocks() {
+        return blocks;
+    }
+
+    // 迷路全体の大きさ(px)
+    public int getPixelWidth() {
+        return horizontalBlockNum * blockSize;
+    }
+
+    public int getPixelHeight() {
+        return verticalBlockNum * blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    // スタートブロックの左上の座標
+    public int getStartLeft() {
+        return blockLeft(startX);
+    }
+
+    public int getStartTop() {
+        return blockTop(startY);
+    }
+
+    // ブロックの矩形は、隣のブロックとの間に1pxの隙間をあけて配置する
+    public int blockLeft(int x) {
+        return x * blockSize + 1;
+    }
+
+    public int blockTop(int y) {
+        return y * blockSize + 1;
+    }
+
+    public int blockRight(int x) {
+        return blockLeft(x) + blockSize - 2;
+    }
+
+    public int blockBottom(int y) {
+        return blockTop(y) + blockSize - 2;
+    }
+
+    @Override
+    public int sweepVertical(int left, int top, int right, int bottom, int yOffset) {
+        if (yOffset == 0) {
+            return 0;
+        }
+        int firstX = Math.max(left / blockSize, 0);
+        int lastX = Math.min((right - 1) / blockSize, horizontalBlockNum - 1);
+
+        if (yOffset > 0) {
+            // 下向き：ボールの下端より下にある壁のうち、もっとも近い行で止まる
+            int lastY = Math.min((bottom + yOffset - 1) / blockSize, verticalBlockNum - 1);
+            for (int y = Math.max(top / blockSize, 0); y <= lastY; y++) {
+                int blockTop = blockTop(y);
+                if (blockTop < bottom || blockTop >= bottom + yOffset) {
+                    continue;
+                }
+                if (hasWallInRow(y, firstX, lastX, left, right)) {
+                    return blockTop - bottom;
+                }
+            }
+        } else {
+            // 上向き：ボールの上端より上にある壁のうち、もっとも近い行で止まる
+            int lastY = Math.max((top + yOffset) / blockSize, 0);
+            for (int y = Math.min((bottom - 1) / blockSize, verticalBlockNum - 1); y >= lastY; y--) {
+                int blockBottom = blockBottom(y);
+                if (blockBottom > top || blockBottom <= top + yOffset) {
+                    continue;
+                }
+                if (hasWallInRow(y, firstX, lastX, left, right)) {
+                    return blockBottom - top;
+                }
+            }
+        }
+        return yOffset;
+    }
+
+    @Override
+    public int sweepHorizontal(int left, int top, int right, int bottom, int xOffset) {
+        if (xOffset == 0) {
+            return 0;
+        }
+        int firstY = Math.max(top / blockSize, 0);
+        int lastY = Math.min((bottom - 1) / blockSize, verticalBlockNum - 1);
+
+        if (xOffset > 0) {
+            // 右向き：ボールの右端より右にある壁のうち、もっとも近い列で止まる
+            int lastX = Math.min((right + xOffset - 1) / blockSize, horizontalBlockNum - 1);
+            for (int x = Math.max(left / blockSize, 0); x <= lastX; x++) {
+                int blockLeft = blockLeft(x);
+                if (blockLeft < right || blockLeft >= right + xOffset) {
+                    continue;
+                }
+                if (hasWallInColumn(x, firstY, lastY, top, bottom)) {
+                    return blockLeft - right;
+                }
+            }
+        } else {
+            // 左向き：ボールの左端より左にある壁のうち、もっとも近い列で止まる
+            int lastX = Math.max((left + xOffset) / blockSize, 0);
+            for (int x = Math.min((right - 1) / blockSize, horizontalBlockNum - 1); x >= lastX; x--) {
+                int blockRight = blockRight(x);
+                if (blockRight > left || blockRight <= left + xOffset) {
+                    continue;
+                }
+                if (hasWallInColumn(x, firstY, lastY, top, bottom)) {
+                    return blockRight - left;
+                }
+            }
+        }
+        return xOffset;
+    }
+
+    // y行目のfirstX〜lastX列に、横方向の範囲[left, right)と重なる壁があるか
+    private boolean hasWallInRow(int y, int firstX, int lastX, int left, int right) {
+        for (int x = firstX; x <= lastX; x++) {
+            if (isWall(x, y) && blockLeft(x) < right && left < blockRight(x)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // x列目のfirstY〜lastY行に、縦方向の範囲[top, bottom)と重なる壁があるか
+    private boolean hasWallInColumn(int x, int firstY, int lastY, int top, int bottom) {
+        for (int y = firstY; y <= lastY; y++) {
+            if (isWall(x, y) && blockTop(y) < bottom && top < blockBottom(y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean canMove(int left, int top, int right, int bottom) {
+        // ボールの現在位置から、ボールがあるブロックの縦と横の位置を計算する
+        int verticalBlock = top / blockSize;
+        int horizontalBlock = left / blockSize;
+
+        // ボールがあるブロックと、その周囲８ブロックのうち、判定が必要なものだけを調べる
+        int mask = neighborMasks != null && contains(horizontalBlock, verticalBlock)
+                ? neighborMasks[verticalBlock * horizontalBlockNum + horizontalBlock]
+                : calcNeighborMask(horizontalBlock, verticalBlock);
+
+        // 周りが床だけなら、どこにでも動ける
+        while (mask != 0) {
+            int bit = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            int y = verticalBlock + NEIGHBOR_DY[bit];
+            int x = horizontalBlock + NEIGHBOR_DX[bit];
+            int type = blocks.get(x, y);
+            int blockLeft = blockLeft(x);
+            int blockTop = blockTop(y);
+            int blockRight = blockRight(x);
+            int blockBottom = blockBottom(y);
+
+            if (type == TYPE_WALL) {
+                if (blockLeft < right && left < blockRight && blockTop < bottom && top < blockBottom) {
+                    return false;
+                }
+            } else if (type == TYPE_GOAL) {
+                if (blockLeft <= left && blockTop <= top && blockRight >= right && blockBottom >= bottom) {
+                    callback.onGoal();
+                    return true;
+                }
+            } else {
+
+                int ballCenterX = left + (right - left) / 2;
+                int ballCenterY = top + (bottom - top) / 2;
+
+                long distanceX = (blockLeft + blockRight) / 2 - ballCenterX;
+                long distanceY = (blockTop + blockBottom) / 2 - ballCenterY;
+                long radius = blockSize / 2;
+
+                // 穴に落ちる判定(平方根を取らずに、距離の２乗で比べる)
+                if (distanceX * distanceX + distanceY * distanceY < radius * radius) {
+                    callback.onHole();
+                }
+            }
+        }
+        return true;
+    }
+}
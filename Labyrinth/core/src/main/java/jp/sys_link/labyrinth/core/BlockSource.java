@@ -0,0 +1,14 @@
+package jp.sys_link.labyrinth.core;
+
+// ブロックの種別を座標で引けるもの。画面の大きさのBlockGridと、
+// 必要な部分だけを生成するChunkedLabyrinthがある
+public interface BlockSource {
+
+    // 横方向のブロック数
+    public int getWidth();
+
+    // 縦方向のブロック数
+    public int getHeight();
+
+    public int get(int x, int y);
+}
@@ -0,0 +1,69 @@
+package jp.sys_link.labyrinth.core;
+
+// 奇数の座標を部屋、その間のブロックを部屋をつなぐ壁として迷路を作るアルゴリズムの共通処理
+// 部屋の番号は cellY * cellWidth + cellX で、部屋(cellX, cellY)はブロック(2 * cellX + 1, 2 * cellY + 1)にある
+final class CellMaze {
+
+    private CellMaze() {
+    }
+
+    // 横方向の部屋の数。縦横のブロック数が偶数のときは、右端と下端に余分な壁が残る
+    static int cellWidth(BlockGrid map) {
+        return (map.getWidth() - 1) / 2;
+    }
+
+    static int cellHeight(BlockGrid map) {
+        return (map.getHeight() - 1) / 2;
+    }
+
+    // すべてを壁で埋める
+    static void fillWalls(BlockGrid map) {
+        int size = map.getWidth() * map.getHeight();
+        for (int i = 0; i < size; i++) {
+            map.set(i, LabyrinthGenerator.WALL);
+        }
+    }
+
+    static int blockIndex(BlockGrid map, int cell, int cellWidth) {
+        return map.index(2 * (cell % cellWidth) + 1, 2 * (cell / cellWidth) + 1);
+    }
+
+    // 部屋がすでに床になっているか
+    static boolean isOpen(BlockGrid map, int cell, int cellWidth) {
+        return map.get(blockIndex(map, cell, cellWidth)) != LabyrinthGenerator.WALL;
+    }
+
+    // 上下左右の部屋の番号をneighborsに詰め、その数を返す
+    static int neighbors(int cell, int cellWidth, int cellHeight, int[] neighbors) {
+        int cellX = cell % cellWidth;
+        int cellY = cell / cellWidth;
+        int count = 0;
+        if (cellX > 0) {
+            neighbors[count++] = cell - 1;
+        }
+        if (cellX + 1 < cellWidth) {
+            neighbors[count++] = cell + 1;
+        }
+        if (cellY > 0) {
+            neighbors[count++] = cell - cellWidth;
+        }
+        if (cellY + 1 < cellHeight) {
+            neighbors[count++] = cell + cellWidth;
+        }
+        return count;
+    }
+
+    // 部屋を床にする
+    static void openCell(BlockGrid map, int cell, int cellWidth) {
+        map.set(blockIndex(map, cell, cellWidth), LabyrinthGenerator.FLOOR);
+    }
+
+    // 隣り合う２つの部屋と、その間の壁を床にする
+    static void connect(BlockGrid map, int from, int to, int cellWidth) {
+        int fromIndex = blockIndex(map, from, cellWidth);
+        int toIndex = blockIndex(map, to, cellWidth);
+        map.set(fromIndex, LabyrinthGenerator.FLOOR);
+        map.set((fromIndex + toIndex) / 2, LabyrinthGenerator.FLOOR);
+        map.set(toIndex, LabyrinthGenerator.FLOOR);
+    }
+}
@@ -0,0 +1,148 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.LinkedHashMap;
+
+// 画面よりずっと大きな迷路を、必要になった部分だけ生成するBlockSource
+// 迷路は CHUNK_SIZE 四方のチャンクに分けて生成し、最近使った MAX_CHUNKS 個だけを保持する
+// 描画スレッドだけから使うことを前提にしているので、同期は行わない
+//
+// LabyrinthGeneratorと同じ棒倒し法だが、柱ごとの倒す向きをシードと座標のハッシュで決めるので、
+// 乱数を先頭から順に引かなくても、どの位置のブロックでもその場で求められる
+// 柱は左・右・上の３方向にしか倒さないので、閉じた領域はできず、すべての床がつながる
+public class ChunkedLabyrinth implements BlockSource {
+
+    // チャンクの一辺のブロック数。柱の位置がそろうように偶数にする
+    private static final int CHUNK_SIZE = 32;
+
+    // 保持するチャンクの数。画面に映る範囲と、その周りを持てる程度
+    private static final int MAX_CHUNKS = 64;
+
+    private static final int DIRECTION_LEFT = 0;
+    private static final int DIRECTION_RIGHT = 1;
+    private static final int DIRECTION_UP = 2;
+
+    private final long seed;
+    private final int horizontalBlockNum;
+    private final int verticalBlockNum;
+
+    private final LinkedHashMap<Long, BlockGrid> chunks =
+            new LinkedHashMap<Long, BlockGrid>(MAX_CHUNKS + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(java.util.Map.Entry<Long, BlockGrid> eldest) {
+                    return size() > MAX_CHUNKS;
+                }
+            };
+
+    // 同じチャンクを続けて参照することが多いので、直前のチャンクを覚えておく
+    private long lastChunkKey = -1;
+    private BlockGrid lastChunk;
+
+    // 縦横のブロック数は、LabyrinthGeneratorと同じく奇数にする
+    public ChunkedLabyrinth(int seed, int horizontalBlockNum, int verticalBlockNum) {
+        this.seed = seed;
+        this.horizontalBlockNum = horizontalBlockNum;
+        this.verticalBlockNum = verticalBlockNum;
+    }
+
+    @Override
+    public int getWidth() {
+        return horizontalBlockNum;
+    }
+
+    @Override
+    public int getHeight() {
+        return verticalBlockNum;
+    }
+
+    // スタートは右下、ゴールは左上の床
+    public int getStartX() {
+        return horizontalBlockNum - 2;
+    }
+
+    public int getStartY() {
+        return verticalBlockNum - 2;
+    }
+
+    @Override
+    public int get(int x, int y) {
+        int chunkX = x / CHUNK_SIZE;
+        int chunkY = y / CHUNK_SIZE;
+        long key = ((long) chunkY << 32) | chunkX;
+        if (key != lastChunkKey) {
+            BlockGrid chunk = chunks.get(key);
+            if (chunk == null) {
+                chunk = generateChunk(chunkX, chunkY);
+                chunks.put(key, chunk);
+            }
+            lastChunkKey = key;
+            lastChunk = chunk;
+        }
+        return lastChunk.get(x - chunkX * CHUNK_SIZE, y - chunkY * CHUNK_SIZE);
+    }
+
+    private BlockGrid generateChunk(int chunkX, int chunkY) {
+        BlockGrid chunk = new BlockGrid(CHUNK_SIZE, CHUNK_SIZE);
+        int offsetX = chunkX * CHUNK_SIZE;
+        int offsetY = chunkY * CHUNK_SIZE;
+        for (int y = 0; y < CHUNK_SIZE; y++) {
+            for (int x = 0; x < CHUNK_SIZE; x++) {
+                chunk.set(x, y, calcBlock(offsetX + x, offsetY + y));
+            }
+        }
+        return chunk;
+    }
+
+    // 周りの柱の倒れる向きから、ブロックの種別を求める
+    private int calcBlock(int x, int y) {
+        if (x >= horizontalBlockNum || y >= verticalBlockNum) {
+            // 迷路の外側。右端と下端のチャンクの余った部分
+            return LabyrinthGenerator.WALL;
+        }
+        if (x == 0 || y == 0 || x == horizontalBlockNum - 1 || y == verticalBlockNum - 1) {
+            // 外壁
+            return LabyrinthGenerator.WALL;
+        }
+        if (x == getStartX() && y == getStartY()) {
+            return LabyrinthGenerator.START;
+        }
+        if (x == 1 && y == 1) {
+            return LabyrinthGenerator.GOAL;
+        }
+
+        boolean evenX = x % 2 == 0;
+        boolean evenY = y % 2 == 0;
+        if (evenX && evenY) {
+            // 柱
+            return LabyrinthGenerator.WALL;
+        }
+        if (evenY) {
+            // 左右の柱の間。左の柱が右に、または右の柱が左に倒れていれば壁
+            if (isPole(x - 1, y) && direction(x - 1, y) == DIRECTION_RIGHT) {
+                return LabyrinthGenerator.WALL;
+            }
+            if (isPole(x + 1, y) && direction(x + 1, y) == DIRECTION_LEFT) {
+                return LabyrinthGenerator.WALL;
+            }
+        } else if (evenX) {
+            // 上下の柱の間。下の柱が上に倒れていれば壁
+            if (isPole(x, y + 1) && direction(x, y + 1) == DIRECTION_UP) {
+                return LabyrinthGenerator.WALL;
+            }
+        }
+        return LabyrinthGenerator.FLOOR;
+    }
+
+    private boolean isPole(int x, int y) {
+        return x > 1 && y > 1 && x < horizontalBlockNum - 1 && y < verticalBlockNum - 1
+                && x % 2 == 0 && y % 2 == 0;
+    }
+
+    // 柱の倒れる向きを、シードと座標のハッシュから決める
+    private int direction(int x, int y) {
+        long hash = seed * 0x9E3779B97F4A7C15L + ((long) y << 32 | x);
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return (int) ((hash >>> 1) % 3);
+    }
+}
@@ -0,0 +1,67 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+// Ellerのアルゴリズム。一行ずつ、同じ集合(上の行でつながっている部屋)どうしをつながないように横の壁を開け、
+// 各集合から少なくとも１つは下へ通路を開ける。最後の行では異なる集合をすべてつなぐ
+// 覚えておくのは一行分の集合だけなので、上から順に一行ずつ作って流すこともできる
+//
+// 集合は、同じ行の同じ集合の部屋を左から順につないだ環状リスト(left, right)で表す
+// 部屋cと右隣の部屋が同じ集合であるのは、右隣の部屋の前がcであるときに限る
+public class EllerAlgorithm implements MazeAlgorithm {
+
+    @Override
+    public void generate(BlockGrid map, Random rand) {
+        CellMaze.fillWalls(map);
+
+        int cellWidth = CellMaze.cellWidth(map);
+        int cellHeight = CellMaze.cellHeight(map);
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            return;
+        }
+
+        int[] left = new int[cellWidth];
+        int[] right = new int[cellWidth];
+        for (int c = 0; c < cellWidth; c++) {
+            left[c] = c;
+            right[c] = c;
+        }
+
+        for (int cellY = 0; cellY < cellHeight; cellY++) {
+            boolean lastRow = cellY == cellHeight - 1;
+            int rowStart = cellY * cellWidth;
+
+            for (int c = 0; c < cellWidth; c++) {
+                CellMaze.openCell(map, rowStart + c, cellWidth);
+
+                // 右隣が別の集合なら、ランダムに(最後の行では必ず)つないで集合をまとめる
+                if (c + 1 < cellWidth) {
+                    int m = left[c + 1];
+                    if (m != c && (lastRow || rand.nextBoolean())) {
+                        right[m] = right[c];
+                        left[right[m]] = m;
+                        right[c] = c + 1;
+                        left[c + 1] = c;
+                        CellMaze.connect(map, rowStart + c, rowStart + c + 1, cellWidth);
+                    }
+                }
+
+                if (lastRow) {
+                    continue;
+                }
+
+                // 集合にほかの部屋が残っていれば、ランダムに下へ通路を開けずに集合から外す
+                // 外した部屋は、次の行では新しい集合になる
+                int m = left[c];
+                if (m != c && rand.nextBoolean()) {
+                    left[right[c]] = m;
+                    right[m] = right[c];
+                    left[c] = c;
+                    right[c] = c;
+                } else {
+                    CellMaze.connect(map, rowStart + c, rowStart + cellWidth + c, cellWidth);
+                }
+            }
+        }
+    }
+}
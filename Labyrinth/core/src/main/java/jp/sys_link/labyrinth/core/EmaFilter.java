@@ -0,0 +1,67 @@
+package jp.sys_link.labyrinth.core;
+
+// 指数移動平均のフィルタ。今の値と新しいサンプルを、サンプルの間隔に応じた割合で混ぜ合わせる
+public class EmaFilter implements AccelerationFilter {
+
+    // 20ms間隔のサンプルに対して、今の値を0.9、新しいサンプルを0.1の割合で混ぜるときの時定数(秒)
+    public static final float DEFAULT_TIME_CONSTANT = 0.19f;
+
+    private final float timeConstant;
+
+    private boolean hasValue;
+    private long previousTimestamp;
+    private float x;
+    private float y;
+
+    public EmaFilter() {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    public EmaFilter(float timeConstant) {
+        if (timeConstant <= 0) {
+            throw new IllegalArgumentException("時定数は正の値にしてください: " + timeConstant);
+        }
+        this.timeConstant = timeConstant;
+    }
+
+    @Override
+    public void reset() {
+        hasValue = false;
+    }
+
+    @Override
+    public void update(long timestamp, float x, float y) {
+        if (!hasValue) {
+            this.x = x;
+            this.y = y;
+            previousTimestamp = timestamp;
+            hasValue = true;
+            return;
+        }
+        float dt = (timestamp - previousTimestamp) / 1e9f;
+        previousTimestamp = timestamp;
+        if (dt <= 0) {
+            return;
+        }
+
+        // 新しいサンプルを混ぜる割合
+        float weight = 1f - (float) Math.exp(-dt / timeConstant);
+        this.x += (x - this.x) * weight;
+        this.y += (y - this.y) * weight;
+    }
+
+    @Override
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    @Override
+    public float getX() {
+        return x;
+    }
+
+    @Override
+    public float getY() {
+        return y;
+    }
+}
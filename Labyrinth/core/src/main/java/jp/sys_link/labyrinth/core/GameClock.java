@@ -0,0 +1,70 @@
+package jp.sys_link.labyrinth.core;
+
+// ステージの経過時間を計るための時計。物理計算、経過時間の表示、ゴールまでの時間は全てこの時計で計る
+// 端末の時刻を変えても影響を受けないように、System.nanoTimeの単調な時刻を使う
+// 一時停止している間は進まない。UIスレッドと描画スレッドの両方から呼ぶので同期する
+public class GameClock {
+
+    // 時刻(ナノ秒)の取得元。テストなどで時間を進めたいときは、コンストラクタで差し替える
+    public interface TimeSource {
+        public long nanoTime();
+    }
+
+    private static final TimeSource SYSTEM_TIME = new TimeSource() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final TimeSource timeSource;
+
+    // 経過時間が0になる時刻。一時停止していた時間の分だけ後ろにずらす
+    private long startTime;
+
+    // 一時停止しているか。System.nanoTimeは負の値も返すので、時刻とは別に持つ
+    private boolean isPaused;
+
+    // 一時停止した時刻
+    private long pausedAt;
+
+    public GameClock() {
+        this(SYSTEM_TIME);
+    }
+
+    public GameClock(TimeSource timeSource) {
+        this.timeSource = timeSource;
+        start();
+    }
+
+    // 経過時間を0に戻す。一時停止中なら、再開するまで0のまま止まっている
+    public synchronized void start() {
+        startTime = now();
+        if (isPaused) {
+            pausedAt = startTime;
+        }
+    }
+
+    public synchronized void pause() {
+        if (!isPaused) {
+            pausedAt = now();
+            isPaused = true;
+        }
+    }
+
+    public synchronized void resume() {
+        if (isPaused) {
+            startTime += now() - pausedAt;
+            isPaused = false;
+        }
+    }
+
+    // 経過時間(ナノ秒)
+    public synchronized long getElapsedNanos() {
+        return (isPaused ? pausedAt : now()) - startTime;
+    }
+
+    private long now() {
+        return timeSource.nanoTime();
+    }
+}
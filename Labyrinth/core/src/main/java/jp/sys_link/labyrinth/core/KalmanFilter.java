@@ -0,0 +1,81 @@
+package jp.sys_link.labyrinth.core;
+
+// 軸ごとに独立した１次元のカルマンフィルタ
+// 傾きはランダムウォークで変わり、サンプルには一定の大きさの雑音が乗っているものとして推定する
+public class KalmanFilter implements AccelerationFilter {
+
+    public static final float DEFAULT_PROCESS_NOISE = 20f;
+    public static final float DEFAULT_MEASUREMENT_NOISE = 0.5f;
+
+    // １秒あたりに値が変わる大きさの分散((m/s^2)^2/s)
+    private final float processNoise;
+    // サンプルの雑音の分散((m/s^2)^2)
+    private final float measurementNoise;
+
+    private boolean hasValue;
+    private long previousTimestamp;
+
+    // 軸ごとの推定値と、推定値の誤差の分散。添字0がx、1がy
+    private final float[] estimates = new float[2];
+    private final float[] variances = new float[2];
+
+    public KalmanFilter() {
+        this(DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    public KalmanFilter(float processNoise, float measurementNoise) {
+        if (processNoise <= 0 || measurementNoise <= 0) {
+            throw new IllegalArgumentException("雑音の分散は正の値にしてください: processNoise=" + processNoise
+                    + ", measurementNoise=" + measurementNoise);
+        }
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public void reset() {
+        hasValue = false;
+    }
+
+    @Override
+    public void update(long timestamp, float x, float y) {
+        if (!hasValue) {
+            estimates[0] = x;
+            estimates[1] = y;
+            variances[0] = measurementNoise;
+            variances[1] = measurementNoise;
+            previousTimestamp = timestamp;
+            hasValue = true;
+            return;
+        }
+        float dt = Math.max((timestamp - previousTimestamp) / 1e9f, 0f);
+        previousTimestamp = timestamp;
+        updateAxis(0, x, dt);
+        updateAxis(1, y, dt);
+    }
+
+    private void updateAxis(int axis, float value, float dt) {
+        // 予測：前のサンプルから経過した時間の分だけ、推定値の誤差が大きくなる
+        float variance = variances[axis] + processNoise * dt;
+
+        // 更新：誤差の大きさに応じて、サンプルの方へ推定値を寄せる
+        float gain = variance / (variance + measurementNoise);
+        estimates[axis] += (value - estimates[axis]) * gain;
+        variances[axis] = (1f - gain) * variance;
+    }
+
+    @Override
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    @Override
+    public float getX() {
+        return estimates[0];
+    }
+
+    @Override
+    public float getY() {
+        return estimates[1];
+    }
+}
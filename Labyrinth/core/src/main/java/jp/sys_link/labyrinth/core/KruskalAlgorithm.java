@@ -0,0 +1,83 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+// Kruskalのアルゴリズム。部屋の間の壁をランダムな順に見て、別々の集合にある部屋どうしの壁だけを開ける
+// 集合はUnion-Findで管理する。短い行き止まりの多い迷路になる
+public class KruskalAlgorithm implements MazeAlgorithm {
+
+    @Override
+    public void generate(BlockGrid map, Random rand) {
+        CellMaze.fillWalls(map);
+
+        int cellWidth = CellMaze.cellWidth(map);
+        int cellHeight = CellMaze.cellHeight(map);
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            return;
+        }
+        int cells = cellWidth * cellHeight;
+        for (int cell = 0; cell < cells; cell++) {
+            CellMaze.openCell(map, cell, cellWidth);
+        }
+
+        // 壁は 部屋の番号 * 2 + (右の壁なら0、下の壁なら1) で表す
+        int[] walls = new int[(cellWidth - 1) * cellHeight + cellWidth * (cellHeight - 1)];
+        int wallCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (cell % cellWidth + 1 < cellWidth) {
+                walls[wallCount++] = cell * 2;
+            }
+            if (cell / cellWidth + 1 < cellHeight) {
+                walls[wallCount++] = cell * 2 + 1;
+            }
+        }
+
+        // Fisher-Yatesでシャッフルする
+        for (int i = wallCount - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int wall = walls[i];
+            walls[i] = walls[j];
+            walls[j] = wall;
+        }
+
+        // 根では集合の大きさを負の数で、それ以外では親の部屋を持つ
+        int[] parent = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            parent[cell] = -1;
+        }
+
+        // 部屋の数 - 1 本の壁を開ければ、すべての部屋がつながる
+        int remaining = cells - 1;
+        for (int i = 0; i < wallCount && remaining > 0; i++) {
+            int a = walls[i] >> 1;
+            int b = (walls[i] & 1) == 0 ? a + 1 : a + cellWidth;
+            int rootA = find(parent, a);
+            int rootB = find(parent, b);
+            if (rootA == rootB) {
+                continue;
+            }
+            // 小さい集合を大きい集合の下につなぐ
+            if (parent[rootA] > parent[rootB]) {
+                int root = rootA;
+                rootA = rootB;
+                rootB = root;
+            }
+            parent[rootA] += parent[rootB];
+            parent[rootB] = rootA;
+            CellMaze.connect(map, a, b, cellWidth);
+            remaining--;
+        }
+    }
+
+    // 経路を半分に縮めながら根を探す
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] >= 0) {
+            int up = parent[cell];
+            if (parent[up] >= 0) {
+                parent[cell] = parent[up];
+            }
+            cell = parent[cell];
+        }
+        return cell;
+    }
+}
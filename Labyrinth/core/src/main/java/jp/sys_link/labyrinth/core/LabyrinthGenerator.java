@@ -0,0 +1,218 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+public class LabyrinthGenerator {
+
+    public static final int FLOOR = 0;
+
+    public static final int WALL = 1;
+
+    public static final int START = 2;
+
+    public static final int GOAL = 3;
+
+    public static final int HOLE = 4;
+
+    public static final int POLL = -1;
+
+    // 同じシードと大きさから作る迷路が変わったときに上げる。ディスクに保存した迷路は、この値が違えば使わない
+    public static final int ALGORITHM_VERSION = 1;
+
+    public enum Direction {
+        TOP,
+        LEFT,
+        RIGHT,
+        BOTTOM,
+    }
+
+    public static class MapResult {
+        public final BlockGrid grid;
+        public final int startY;
+        public final int startX;
+
+        MapResult(BlockGrid grid, int startY, int startX) {
+            this.grid = grid;
+            this.startY = startY;
+            this.startX = startX;
+        }
+    }
+
+    // 迷路の作り方を指定しないときは、以前から使っている棒倒し法で作る
+    // リプレイはシードから同じ迷路を作り直すので、既定のアルゴリズムは変えないこと
+    private static final MazeAlgorithm DEFAULT_ALGORITHM = new PoleKnockingAlgorithm();
+
+    public static MapResult getMap(int seed, int horizontalBlockNum, int verticalBlockNum) {
+        return getMap(seed, horizontalBlockNum, verticalBlockNum, DEFAULT_ALGORITHM);
+    }
+
+    public static MapResult getMap(int seed, int horizontalBlockNum, int verticalBlockNum, MazeAlgorithm algorithm) {
+
+        BlockGrid result = new BlockGrid(horizontalBlockNum, verticalBlockNum);
+
+        // 迷路の生成と穴の配置には、シードから作った同じ乱数を続けて使う
+        Random rand = new Random(seed);
+
+        // 迷路を生成
+        algorithm.generate(result, rand);
+
+        int startY = -1;
+        int startX = -1;
+
+        // スタート地点を下端の右端から最初の床に設定
+        for (int y = verticalBlockNum - 1; y >= 0; y--) {
+            for (int x = horizontalBlockNum - 1; x >= 0; x--) {
+                if (result.get(x, y) == FLOOR) {
+                    startY = y;
+                    startX = x;
+                    result.set(startX, startY, START);
+                    break;
+                }
+            }
+            if (startY != -1 && startX != -1) {
+                break;
+            }
+        }
+
+        // スタートからの距離をすべてのブロックについて計算する
+        // 穴はまだ置いていないので、ゴールまでの道は必ず穴を通らない
+        int[] steps = calcStep(result, startY, startX);
+
+        // もっとも長い距離のブロックをゴールに設定する
+        int maxScore = 0;
+        int maxScoreIndex = 0;
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i] > maxScore) {
+                maxScore = steps[i];
+                maxScoreIndex = i;
+            }
+        }
+
+        // ゴールの設定
+        result.set(maxScoreIndex, GOAL);
+
+        // 設定する穴の個数
+        int holeCount = seed + 1;
+        if (holeCount > (verticalBlockNum + horizontalBlockNum)) {
+            holeCount = verticalBlockNum + horizontalBlockNum;
+        }
+
+        setHoles(holeCount, rand, result, markPath(result, steps, maxScoreIndex));
+
+        return new MapResult(result, startY, startX);
+
+    }
+
+    // スタートから各ブロックまでの距離を幅優先探索で計算する
+    // 結果はグリッドと同じ行優先の一次元配列で、スタートを1として数え、到達できないブロックは0のままにする
+    // 再帰を使わないので、大きなマップでもスタックがあふれることはない
+    static int[] calcStep(BlockGrid map, int startY, int startX) {
+        int vertical = map.getHeight();
+        int horizontal = map.getWidth();
+        int stride = map.getStride();
+
+        int[] steps = new int[vertical * stride];
+        // 各ブロックは一度しかキューに入らないので、ブロック数分の配列で足りる
+        int[] queue = new int[vertical * horizontal];
+        int head = 0;
+        int tail = 0;
+
+        int start = map.index(startX, startY);
+        steps[start] = 1;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int index = queue[head++];
+            int y = index / stride;
+            int x = index % stride;
+            int score = steps[index] + 1;
+
+            if (x + 1 < horizontal) {
+                tail = visitStep(map, index + 1, steps, score, queue, tail);
+            }
+            if (y + 1 < vertical) {
+                tail = visitStep(map, index + stride, steps, score, queue, tail);
+            }
+            if (x - 1 >= 0) {
+                tail = visitStep(map, index - 1, steps, score, queue, tail);
+            }
+            if (y - 1 >= 0) {
+                tail = visitStep(map, index - stride, steps, score, queue, tail);
+            }
+        }
+        return steps;
+    }
+
+    // 未訪問の壁以外のブロックであれば距離を設定してキューに追加する
+    private static int visitStep(BlockGrid map, int index, int[] steps, int score, int[] queue, int tail) {
+        if (steps[index] != 0 || map.get(index) == WALL) {
+            return tail;
+        }
+        steps[index] = score;
+        queue[tail++] = index;
+        return tail;
+    }
+
+    // ゴールから距離が1ずつ減るブロックをたどり、スタートまでの最短経路のブロックに印を付ける
+    private static boolean[] markPath(BlockGrid map, int[] steps, int goal) {
+        int horizontal = map.getWidth();
+        int vertical = map.getHeight();
+        int stride = map.getStride();
+
+        boolean[] path = new boolean[steps.length];
+        int index = goal;
+        path[index] = true;
+        while (steps[index] > 1) {
+            int x = index % stride;
+            int y = index / stride;
+            int previous = steps[index] - 1;
+            if (x + 1 < horizontal && steps[index + 1] == previous) {
+                index += 1;
+            } else if (y + 1 < vertical && steps[index + stride] == previous) {
+                index += stride;
+            } else if (x - 1 >= 0 && steps[index - 1] == previous) {
+                index -= 1;
+            } else {
+                index -= stride;
+            }
+            path[index] = true;
+        }
+        return path;
+    }
+
+    // 外壁以外の壁のうち、最短経路のブロックに接していないものから穴を選ぶ
+    // 穴は移動をさえぎらないので、経路の横に穴があると、経路をたどるだけで落ちることがある
+    // 壁だけを穴にするので、最短経路は穴を通らないまま残る
+    // 候補を一度に集めてから部分的にシャッフルするので、乱数を引く回数は穴の数だけで決まる
+    private static void setHoles(int holeCount, Random rand, BlockGrid map, boolean[] path) {
+        int horizontal = map.getWidth();
+        int vertical = map.getHeight();
+
+        int[] candidates = new int[Math.max(horizontal - 2, 0) * Math.max(vertical - 2, 0)];
+        int count = 0;
+        for (int y = 1; y < vertical - 1; y++) {
+            for (int x = 1; x < horizontal - 1; x++) {
+                int index = map.index(x, y);
+                if (map.get(index) == WALL && !touchesPath(map, path, x, y)) {
+                    candidates[count++] = index;
+                }
+            }
+        }
+
+        int holes = Math.min(holeCount, count);
+        for (int i = 0; i < holes; i++) {
+            int j = i + rand.nextInt(count - i);
+            int candidate = candidates[j];
+            candidates[j] = candidates[i];
+            candidates[i] = candidate;
+            map.set(candidate, HOLE);
+        }
+    }
+
+    // 上下左右のどれかが最短経路のブロックか
+    private static boolean touchesPath(BlockGrid map, boolean[] path, int x, int y) {
+        int index = map.index(x, y);
+        int stride = map.getStride();
+        return path[index - 1] || path[index + 1] || path[index - stride] || path[index + stride];
+    }
+}
@@ -0,0 +1,109 @@
+package jp.sys_link.labyrinth.core;
+
+// 直近の WINDOW 個の計測値(ナノ秒)を、対数の目盛りのヒストグラムにまとめる
+// 新しい値を入れるたびに一番古い値をリングバッファから追い出し、その分をヒストグラムから引くので、
+// 記録もパーセンタイルの計算も配列を作らずにできる
+// 計測するスレッドと表示や書き出しをするスレッドが違うことがあるので、メソッドは同期する
+public class LatencyHistogram {
+
+    // ２倍ごとの区間を８つに分ける。目盛りの誤差は最大で1/8
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // 2^40ナノ秒(約18分)より長い値は、最後の目盛りにまとめる
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] window;
+    private int head;
+    private int count;
+
+    private final int[] buckets = new int[BUCKET_COUNT];
+
+    public LatencyHistogram(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("記録する個数は1以上にしてください: " + windowSize);
+        }
+        window = new long[windowSize];
+    }
+
+    public synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        if (count == window.length) {
+            buckets[bucketOf(window[head])]--;
+        } else {
+            count++;
+        }
+        window[head] = nanos;
+        buckets[bucketOf(nanos)]++;
+        head = head + 1 == window.length ? 0 : head + 1;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = 0;
+        }
+    }
+
+    // 記録している値の数
+    public synchronized int getCount() {
+        return count;
+    }
+
+    // 直近の値のうち、割合percentile(0〜1)の位置にある値。記録がなければ0
+    // 目盛りの上端を返すので実際より最大1/8大きくなるが、記録した最大値は超えない
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * count);
+        if (rank < 1) {
+            rank = 1;
+        } else if (rank > count) {
+            rank = count;
+        }
+        int seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    // 直近の値の最大値
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, window[i]);
+        }
+        return max;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // 目盛りに入る一番大きな値
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
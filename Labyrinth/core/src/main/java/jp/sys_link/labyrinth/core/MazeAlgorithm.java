@@ -0,0 +1,11 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+// 迷路の壁と通路を作るアルゴリズム
+// mapのすべてのブロックをFLOORかWALLにする。外周は必ず壁にする
+// 同じ乱数の列からは同じ迷路を作ること。穴の配置は、続けて同じRandomを使ってLabyrinthGeneratorが行う
+public interface MazeAlgorithm {
+
+    void generate(BlockGrid map, Random rand);
+}
@@ -0,0 +1,450 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+// 迷路の最短経路を求める
+// ゴールからの距離を一度だけ計算しておき、どのブロックからでもゴールへ向かう次の向きと残りの距離をすぐに返す
+// 物理計算のたびにボールのいるブロックから問い合わせても、隣の４ブロックを見るだけで済む
+// 任意の２点の間は、A*(マンハッタン距離)か双方向の幅優先探索で求める
+// 穴に落ちる道は案内しないので、壁と穴を通れないものとして扱う
+public final class MazeSolver {
+
+    // 保持する距離の数。StagePrefetcherと同じく、今のステージ、次のステージと予備の１つ
+    private static final int MAX_STAGES = 3;
+
+    // StagePrefetcherは同じステージに同じMapResultを返すので、MapResultごとに距離を使い回す
+    private static final LinkedHashMap<LabyrinthGenerator.MapResult, MazeSolver> solvers =
+            new LinkedHashMap<LabyrinthGenerator.MapResult, MazeSolver>(MAX_STAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(java.util.Map.Entry<LabyrinthGenerator.MapResult, MazeSolver> eldest) {
+                    return size() > MAX_STAGES;
+                }
+            };
+
+    // 目安時間の計算に使う傾き(m/s^2)。約12度傾けたときの加速度で、一定の速さで転がるものとする
+    private static final float PAR_ACCEL = 2f;
+    // 曲がり角ごとに、止まって向きを変えるのにかかる時間
+    private static final long PAR_TURN_NS = 300000000L;
+
+    // 目安時間に対する評価。目安以内で3、目安の1.5倍以内で2、それより遅ければ1
+    public static final int MAX_RATING = 3;
+
+    // ステージの迷路の距離を返す。まだ計算していなければ、呼び出したスレッドで計算する
+    public static MazeSolver of(LabyrinthGenerator.MapResult map) {
+        synchronized (solvers) {
+            MazeSolver solver = solvers.get(map);
+            if (solver == null) {
+                solver = new MazeSolver(map.grid);
+                solvers.put(map, solver);
+            }
+            return solver;
+        }
+    }
+
+    private final BlockGrid grid;
+    private final int goal;
+
+    // ゴールからの距離。ゴールを1として数え、ゴールに着けないブロックは0のまま
+    private final int[] distances;
+
+    // 探索ごとに使い回す配列。最初の探索で確保する
+    // mark[i] == searchIdなら今回の探索で訪れたブロックで、配列を毎回消さずに済む
+    private int searchId;
+    private int[] mark;
+    private int[] markBackward;
+    private int[] parent;
+    private int[] parentBackward;
+    private int[] cost;
+    private int[] costBackward;
+    private int[] queue;
+    private int[] queueBackward;
+    private long[] heap = new long[16];
+    // 双方向の探索で、それぞれのキューの末尾
+    private int tail;
+    private int tailBackward;
+
+    public MazeSolver(BlockGrid grid) {
+        this.grid = grid;
+
+        int goal = -1;
+        int size = grid.getWidth() * grid.getHeight();
+        for (int i = 0; i < size; i++) {
+            if (grid.get(i) == LabyrinthGenerator.GOAL) {
+                goal = i;
+                break;
+            }
+        }
+        if (goal < 0) {
+            throw new IllegalArgumentException("ゴールがありません");
+        }
+        this.goal = goal;
+        distances = StageAnalyzer.calcSafeStep(grid, goal);
+    }
+
+    public int getGoalX() {
+        return goal % grid.getStride();
+    }
+
+    public int getGoalY() {
+        return goal / grid.getStride();
+    }
+
+    // (x, y)からゴールまでのブロック数。ゴールに着けなければ-1
+    public int getDistance(int x, int y) {
+        if (!grid.contains(x, y)) {
+            return -1;
+        }
+        return distances[grid.index(x, y)] - 1;
+    }
+
+    // (x, y)からゴールへ向かうときに、次に進む向き。ゴールの上にいるか、ゴールに着けなければnull
+    public LabyrinthGenerator.Direction getHint(int x, int y) {
+        if (!grid.contains(x, y)) {
+            return null;
+        }
+        int index = grid.index(x, y);
+        int next = nextStep(index);
+        if (next < 0) {
+            return null;
+        }
+        int stride = grid.getStride();
+        if (next == index + 1) {
+            return LabyrinthGenerator.Direction.RIGHT;
+        }
+        if (next == index - 1) {
+            return LabyrinthGenerator.Direction.LEFT;
+        }
+        return next == index + stride ? LabyrinthGenerator.Direction.BOTTOM : LabyrinthGenerator.Direction.TOP;
+    }
+
+    // (x, y)からゴールまでの最短経路。両端を含むブロックのインデックスを順に並べる。ゴールに着けなければnull
+    public int[] getPath(int x, int y) {
+        int distance = getDistance(x, y);
+        if (distance < 0) {
+            return null;
+        }
+        int[] path = new int[distance + 1];
+        int index = grid.index(x, y);
+        for (int i = 0; i < path.length; i++) {
+            path[i] = index;
+            index = nextStep(index);
+        }
+        return path;
+    }
+
+    // 距離が1小さい隣のブロック。ゴールの上か、ゴールに着けなければ-1
+    private int nextStep(int index) {
+        int distance = distances[index];
+        if (distance <= 1) {
+            return -1;
+        }
+        int stride = grid.getStride();
+        int x = index % stride;
+        int y = index / stride;
+        if (x + 1 < grid.getWidth() && distances[index + 1] == distance - 1) {
+            return index + 1;
+        }
+        if (x > 0 && distances[index - 1] == distance - 1) {
+            return index - 1;
+        }
+        if (y + 1 < grid.getHeight() && distances[index + stride] == distance - 1) {
+            return index + stride;
+        }
+        return index - stride;
+    }
+
+    // (x, y)からゴールまで、一定の傾きで転がしたときの目安時間(ナノ秒)。ゴールに着けなければ-1
+    // ボールは１ステップで傾きに比例したピクセル数だけ動くので、ブロックの大きさに比例する
+    public long getParNanos(int x, int y, int blockSize) {
+        int[] path = getPath(x, y);
+        if (path == null) {
+            return -1;
+        }
+        int turns = 0;
+        for (int i = 2; i < path.length; i++) {
+            if (path[i] - path[i - 1] != path[i - 1] - path[i - 2]) {
+                turns++;
+            }
+        }
+        float pixelsPerStep = PAR_ACCEL * Physics.ACCEL_WEIGHT;
+        long steps = (long) Math.ceil((path.length - 1) * blockSize / pixelsPerStep);
+        return steps * Physics.STEP_NS + turns * PAR_TURN_NS;
+    }
+
+    // ゴールまでの時間を目安時間と比べて、1〜MAX_RATINGで評価する
+    public static int rate(long finishNanos, long parNanos) {
+        if (finishNanos <= parNanos) {
+            return MAX_RATING;
+        }
+        if (finishNanos <= parNanos + parNanos / 2) {
+            return MAX_RATING - 1;
+        }
+        return 1;
+    }
+
+    // A*で(fromX, fromY)から(toX, toY)までの最短経路を求める。両端を含むブロックのインデックスを順に並べる
+    // 着けなければnull。評価値はスタートからの距離とゴールまでのマンハッタン距離の和
+    public synchronized int[] findPath(int fromX, int fromY, int toX, int toY) {
+        if (!isPassable(fromX, fromY) || !isPassable(toX, toY)) {
+            return null;
+        }
+        beginSearch();
+        int horizontal = grid.getWidth();
+        int vertical = grid.getHeight();
+        int stride = grid.getStride();
+        int from = grid.index(fromX, fromY);
+        int to = grid.index(toX, toY);
+
+        mark[from] = searchId;
+        cost[from] = 0;
+        parent[from] = -1;
+        int heapSize = push(0, Math.abs(fromX - toX) + Math.abs(fromY - toY), from);
+
+        while (heapSize > 0) {
+            long top = heap[0];
+            heapSize = pop(heapSize);
+            int index = (int) top;
+            int x = index % stride;
+            int y = index / stride;
+            int g = cost[index];
+            // 後からより短い距離で入れ直したブロックの、古い要素は飛ばす
+            if ((int) (top >>> 32) != g + Math.abs(x - toX) + Math.abs(y - toY)) {
+                continue;
+            }
+            if (index == to) {
+                return buildPath(to, g);
+            }
+            if (x + 1 < horizontal) {
+                heapSize = relax(index + 1, index, g + 1, toX, toY, heapSize);
+            }
+            if (x > 0) {
+                heapSize = relax(index - 1, index, g + 1, toX, toY, heapSize);
+            }
+            if (y + 1 < vertical) {
+                heapSize = relax(index + stride, index, g + 1, toX, toY, heapSize);
+            }
+            if (y > 0) {
+                heapSize = relax(index - stride, index, g + 1, toX, toY, heapSize);
+            }
+        }
+        return null;
+    }
+
+    // まだ訪れていないか、今までより短い距離で着けるなら、距離と来た方向を更新してヒープに入れる
+    private int relax(int index, int from, int g, int toX, int toY, int heapSize) {
+        if (mark[index] == searchId ? cost[index] <= g : isBlocked(grid.get(index))) {
+            return heapSize;
+        }
+        mark[index] = searchId;
+        cost[index] = g;
+        parent[index] = from;
+        int stride = grid.getStride();
+        int h = Math.abs(index % stride - toX) + Math.abs(index / stride - toY);
+        return push(heapSize, g + h, index);
+    }
+
+    // 二分ヒープの要素は、上位32ビットに評価値、下位32ビットにインデックスを詰めたlong
+    // longのまま比較すれば評価値の小さい順になる
+    private int push(int heapSize, int f, int index) {
+        if (heapSize == heap.length) {
+            long[] larger = new long[heap.length * 2];
+            System.arraycopy(heap, 0, larger, 0, heapSize);
+            heap = larger;
+        }
+        long entry = ((long) f << 32) | index;
+        int i = heapSize;
+        while (i > 0) {
+            int up = (i - 1) >> 1;
+            if (heap[up] <= entry) {
+                break;
+            }
+            heap[i] = heap[up];
+            i = up;
+        }
+        heap[i] = entry;
+        return heapSize + 1;
+    }
+
+    // 先頭の要素を取り除く
+    private int pop(int heapSize) {
+        heapSize--;
+        long last = heap[heapSize];
+        int i = 0;
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return heapSize;
+    }
+
+    // 双方向の幅優先探索で(fromX, fromY)から(toX, toY)までの最短経路を求める。着けなければnull
+    // 両端から１段ずつ、キューの短い方を広げる。ある段で反対側が訪れたブロックに出会ったら、
+    // その段を広げ終えるまでに見つかったつなぎ目のうち、合計の距離が最も短いものでつなぐ
+    public synchronized int[] findPathBidirectional(int fromX, int fromY, int toX, int toY) {
+        if (!isPassable(fromX, fromY) || !isPassable(toX, toY)) {
+            return null;
+        }
+        beginSearch();
+        int from = grid.index(fromX, fromY);
+        int to = grid.index(toX, toY);
+        if (from == to) {
+            return new int[]{from};
+        }
+
+        mark[from] = searchId;
+        cost[from] = 0;
+        parent[from] = -1;
+        queue[0] = from;
+        int head = 0;
+        tail = 1;
+
+        markBackward[to] = searchId;
+        costBackward[to] = 0;
+        parentBackward[to] = -1;
+        queueBackward[0] = to;
+        int headBackward = 0;
+        tailBackward = 1;
+
+        while (head < tail && headBackward < tailBackward) {
+            int meet = -1;
+            if (tail - head <= tailBackward - headBackward) {
+                int end = tail;
+                while (head < end) {
+                    meet = shorter(meet, expand(queue[head++], true));
+                }
+            } else {
+                int end = tailBackward;
+                while (headBackward < end) {
+                    meet = shorter(meet, expand(queueBackward[headBackward++], false));
+                }
+            }
+            if (meet >= 0) {
+                return joinPath(meet);
+            }
+        }
+        return null;
+    }
+
+    // indexの隣で、まだ訪れていない通れるブロックを、forwardならスタート側、そうでなければゴール側のキューに追加する
+    // 反対側が訪れたブロックに出会ったら、そのうち合計の距離が最も短いものを返す。なければ-1
+    private int expand(int index, boolean forward) {
+        int[] mark = forward ? this.mark : markBackward;
+        int[] cost = forward ? this.cost : costBackward;
+        int[] parent = forward ? this.parent : parentBackward;
+        int[] otherMark = forward ? markBackward : this.mark;
+
+        int horizontal = grid.getWidth();
+        int vertical = grid.getHeight();
+        int stride = grid.getStride();
+        int x = index % stride;
+        int y = index / stride;
+        int g = cost[index] + 1;
+        int meet = -1;
+        for (int i = 0; i < 4; i++) {
+            int next;
+            if (i == 0) {
+                next = x + 1 < horizontal ? index + 1 : -1;
+            } else if (i == 1) {
+                next = x > 0 ? index - 1 : -1;
+            } else if (i == 2) {
+                next = y + 1 < vertical ? index + stride : -1;
+            } else {
+                next = y > 0 ? index - stride : -1;
+            }
+            if (next < 0 || mark[next] == searchId || isBlocked(grid.get(next))) {
+                continue;
+            }
+            mark[next] = searchId;
+            cost[next] = g;
+            parent[next] = index;
+            if (forward) {
+                queue[tail++] = next;
+            } else {
+                queueBackward[tailBackward++] = next;
+            }
+            if (otherMark[next] == searchId) {
+                meet = shorter(meet, next);
+            }
+        }
+        return meet;
+    }
+
+    // 出会ったブロックのうち、両側からの距離の合計が短い方
+    private int shorter(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return cost[a] + costBackward[a] <= cost[b] + costBackward[b] ? a : b;
+    }
+
+    // 行きはparentをたどってfromまで戻り、帰りはparentBackwardをたどってtoまで進む
+    private int[] joinPath(int meet) {
+        int[] path = new int[cost[meet] + costBackward[meet] + 1];
+        int index = meet;
+        for (int i = cost[meet]; i >= 0; i--) {
+            path[i] = index;
+            index = parent[index];
+        }
+        index = meet;
+        for (int i = cost[meet]; i < path.length; i++) {
+            path[i] = index;
+            index = parentBackward[index];
+        }
+        return path;
+    }
+
+    // parentをtoからfromまでたどり、fromからの順に並べる
+    private int[] buildPath(int to, int length) {
+        int[] path = new int[length + 1];
+        int index = to;
+        for (int i = length; i >= 0; i--) {
+            path[i] = index;
+            index = parent[index];
+        }
+        return path;
+    }
+
+    private boolean isPassable(int x, int y) {
+        return grid.contains(x, y) && !isBlocked(grid.get(x, y));
+    }
+
+    private static boolean isBlocked(int type) {
+        return type == LabyrinthGenerator.WALL || type == LabyrinthGenerator.HOLE;
+    }
+
+    // 探索の番号を進める。一周したときは、前の探索の印と区別できるように配列を消す
+    private void beginSearch() {
+        if (mark == null) {
+            int size = grid.getWidth() * grid.getHeight();
+            mark = new int[size];
+            markBackward = new int[size];
+            parent = new int[size];
+            parentBackward = new int[size];
+            cost = new int[size];
+            costBackward = new int[size];
+            queue = new int[size];
+            queueBackward = new int[size];
+        }
+        searchId++;
+        if (searchId == 0) {
+            Arrays.fill(mark, 0);
+            Arrays.fill(markBackward, 0);
+            searchId = 1;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package jp.sys_link.labyrinth.core;
+
+// One Euroフィルタ。値がゆっくり変わるときは強く平滑化して震えを抑え、
+// 速く変わるときは平滑化を弱めて遅れを減らす
+public class OneEuroFilter implements AccelerationFilter {
+
+    public static final float DEFAULT_MIN_CUTOFF = 1f;
+    public static final float DEFAULT_BETA = 0.1f;
+    public static final float DEFAULT_DERIVATIVE_CUTOFF = 1f;
+
+    // 静止しているときのカットオフ周波数(Hz)
+    private final float minCutoff;
+    // 変化の速さに応じてカットオフ周波数を上げる割合
+    private final float beta;
+    // 変化の速さを平滑化するカットオフ周波数(Hz)
+    private final float derivativeCutoff;
+
+    private boolean hasValue;
+    private long previousTimestamp;
+
+    // 軸ごとの値と変化の速さ。添字0がx、1がy
+    private final float[] values = new float[2];
+    private final float[] derivatives = new float[2];
+
+    public OneEuroFilter() {
+        this(DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF);
+    }
+
+    public OneEuroFilter(float minCutoff, float beta, float derivativeCutoff) {
+        if (minCutoff <= 0 || derivativeCutoff <= 0 || beta < 0) {
+            throw new IllegalArgumentException("フィルタの係数が不正です: minCutoff=" + minCutoff
+                    + ", beta=" + beta + ", derivativeCutoff=" + derivativeCutoff);
+        }
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+        this.derivativeCutoff = derivativeCutoff;
+    }
+
+    @Override
+    public void reset() {
+        hasValue = false;
+    }
+
+    @Override
+    public void update(long timestamp, float x, float y) {
+        if (!hasValue) {
+            values[0] = x;
+            values[1] = y;
+            derivatives[0] = 0;
+            derivatives[1] = 0;
+            previousTimestamp = timestamp;
+            hasValue = true;
+            return;
+        }
+        float dt = (timestamp - previousTimestamp) / 1e9f;
+        previousTimestamp = timestamp;
+        if (dt <= 0) {
+            return;
+        }
+        updateAxis(0, x, dt);
+        updateAxis(1, y, dt);
+    }
+
+    private void updateAxis(int axis, float value, float dt) {
+        float derivative = (value - values[axis]) / dt;
+        derivatives[axis] += (derivative - derivatives[axis]) * smoothing(derivativeCutoff, dt);
+
+        float cutoff = minCutoff + beta * Math.abs(derivatives[axis]);
+        values[axis] += (value - values[axis]) * smoothing(cutoff, dt);
+    }
+
+    // カットオフ周波数cutoffの１次ローパスフィルタで、新しい値を混ぜる割合
+    private static float smoothing(float cutoff, float dt) {
+        float tau = 1f / (2f * (float) Math.PI * cutoff);
+        return 1f / (1f + tau / dt);
+    }
+
+    @Override
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    @Override
+    public float getX() {
+        return values[0];
+    }
+
+    @Override
+    public float getY() {
+        return values[1];
+    }
+}
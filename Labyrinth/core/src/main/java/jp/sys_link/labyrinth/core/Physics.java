@@ -0,0 +1,25 @@
+package jp.sys_link.labyrinth.core;
+
+// ボールの物理計算の定数と、１ステップ分の計算
+// アプリとリプレイの再生で同じ計算を行い、同じ軌跡になるようにする
+public class Physics {
+
+    // ボールの物理計算を行う間隔(ナノ秒)。センサーの通知間隔や端末の速さに関係なく、
+    // この間隔ごとに一定量だけボールを動かす
+    public static final long STEP_NS = 20000000L;
+
+    // センサーの値(m/s^2)から、１ステップの移動量(px)への倍率
+    public static final float ACCEL_WEIGHT = 3f;
+
+    // ブロックの大きさに対するボールの大きさ
+    public static final float BALL_SCALE = 0.8f;
+
+    private Physics() {
+    }
+
+    // 加速度センサーのフィルタ後の値(x, y)で、ボールを１ステップ分動かす
+    // 画面の右がセンサーのxの負の向き、画面の下がyの正の向き
+    public static void step(BallBody ball, float x, float y) {
+        ball.move(-x * ACCEL_WEIGHT, y * ACCEL_WEIGHT);
+    }
+}
@@ -0,0 +1,109 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+// 棒倒し法。２つおきに立てた柱から、ランダムな向きに壁を１つ倒す
+// 柱ごとの向きの選び方は以前のLabyrinthGeneratorと同じなので、同じシードからは同じ迷路ができる
+// 上の段から順に倒すので、倒す向きがかたよった迷路になる
+public class PoleKnockingAlgorithm implements MazeAlgorithm {
+
+    private static final LabyrinthGenerator.Direction[] FIRST_ROW_DIRECTIONS = {
+            LabyrinthGenerator.Direction.TOP,
+            LabyrinthGenerator.Direction.LEFT,
+            LabyrinthGenerator.Direction.RIGHT,
+            LabyrinthGenerator.Direction.BOTTOM,
+    };
+
+    private static final LabyrinthGenerator.Direction[] OTHER_ROW_DIRECTIONS = {
+            LabyrinthGenerator.Direction.LEFT,
+            LabyrinthGenerator.Direction.RIGHT,
+            LabyrinthGenerator.Direction.BOTTOM,
+    };
+
+    @Override
+    public void generate(BlockGrid map, Random rand) {
+        int horizontal = map.getWidth();
+        int vertical = map.getHeight();
+
+        // 配列の初期化
+        for (int y = 0; y < vertical; y++) {
+
+            for (int x = 0; x < horizontal; x++) {
+
+                if (y == 0 || y == vertical - 1) {
+                    // １行目と最終行は壁に設定
+                    map.set(x, y, LabyrinthGenerator.WALL);
+
+                } else if (x == 0 || x == horizontal - 1) {
+                    // １列目と最終列は壁に設定
+                    map.set(x, y, LabyrinthGenerator.WALL);
+
+                } else if (x > 1 && x % 2 == 0 && y > 1 && y % 2 == 0) {
+
+                    // ２つ毎に壁
+                    map.set(x, y, LabyrinthGenerator.POLL);
+                } else {
+                    // その他は床に設定
+                    map.set(x, y, LabyrinthGenerator.FLOOR);
+                }
+            }
+        }
+
+        // 壁を作る方向の候補。柱ごとにArrayListを作らず、同じ配列を詰め直して使う
+        LabyrinthGenerator.Direction[] directions = new LabyrinthGenerator.Direction[FIRST_ROW_DIRECTIONS.length];
+
+        for (int y = 0; y < vertical; y++) {
+            for (int x = 0; x < horizontal; x++) {
+                if (map.get(x, y) == LabyrinthGenerator.POLL) {
+
+                    // 閉鎖路を防ぐため、２段目以降は上向きに壁を設定しない
+                    LabyrinthGenerator.Direction[] candidates = y == 1 ? FIRST_ROW_DIRECTIONS : OTHER_ROW_DIRECTIONS;
+                    int count = candidates.length;
+                    System.arraycopy(candidates, 0, directions, 0, count);
+
+                    do {
+                        int chosen = rand.nextInt(count);
+                        if (setDirection(y, x, directions[chosen], map)) {
+                            break;
+                        } else {
+                            // List.removeと同じく、後ろの候補を詰めて順番を保つ
+                            System.arraycopy(directions, chosen + 1, directions, chosen, count - chosen - 1);
+                            count--;
+                        }
+                    } while (count > 0);
+                }
+            }
+        }
+    }
+
+    private static boolean setDirection(int y, int x, LabyrinthGenerator.Direction direction, BlockGrid map) {
+        map.set(x, y, LabyrinthGenerator.WALL);
+
+        switch (direction) {
+            case LEFT:
+                x -= 1;
+                break;
+            case RIGHT:
+                x += 1;
+                break;
+            case BOTTOM:
+                y -= 1;
+                break;
+            case TOP:
+                y += 1;
+                break;
+        }
+
+        if (!map.contains(x, y)) {
+            return false;
+        }
+
+        if (map.get(x, y) == LabyrinthGenerator.WALL) {
+            return false;
+        }
+
+        map.set(x, y, LabyrinthGenerator.WALL);
+
+        return true;
+    }
+}
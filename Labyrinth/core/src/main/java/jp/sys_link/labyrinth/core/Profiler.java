@@ -0,0 +1,126 @@
+package jp.sys_link.labyrinth.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+// 処理の区間ごとにLatencyHistogramを持ち、かかった時間を記録する
+// 画面に重ねる表示はchar[]に書き込むので、毎フレーム呼んでも文字列を作らない
+public class Profiler {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private static final char[] P50 = " p50 ".toCharArray();
+    private static final char[] P95 = " p95 ".toCharArray();
+    private static final char[] P99 = " p99 ".toCharArray();
+    private static final char[] UNIT = " ms".toCharArray();
+
+    // 区間名をそろえる幅
+    private static final int NAME_WIDTH = 11;
+
+    // formatLineで書き込む最大の文字数
+    public static final int LINE_LENGTH = NAME_WIDTH + (5 + 8) * 3 + 3;
+
+    private final String[] names;
+    private final LatencyHistogram[] histograms;
+
+    public Profiler(String[] names, int windowSize) {
+        this.names = names.clone();
+        histograms = new LatencyHistogram[names.length];
+        for (int i = 0; i < names.length; i++) {
+            histograms[i] = new LatencyHistogram(windowSize);
+        }
+    }
+
+    public int getSectionCount() {
+        return names.length;
+    }
+
+    public String getName(int section) {
+        return names[section];
+    }
+
+    public LatencyHistogram getHistogram(int section) {
+        return histograms[section];
+    }
+
+    // startNanosからの経過時間を記録し、今の時刻を返す。続けて次の区間を計るときに使う
+    public long record(int section, long startNanos) {
+        long now = System.nanoTime();
+        histograms[section].record(now - startNanos);
+        return now;
+    }
+
+    public void clear() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.clear();
+        }
+    }
+
+    // "区間名 p50 0.42 p95 1.20 p99 2.31 ms" をtextに書き込み、文字数を返す
+    // textは LINE_LENGTH 文字以上にしておく
+    public int formatLine(int section, char[] text) {
+        String name = names[section];
+        int length = Math.min(name.length(), NAME_WIDTH);
+        name.getChars(0, length, text, 0);
+        while (length < NAME_WIDTH) {
+            text[length++] = ' ';
+        }
+
+        LatencyHistogram histogram = histograms[section];
+        length = append(text, length, P50);
+        length = appendMillis(text, length, histogram.getPercentile(0.5));
+        length = append(text, length, P95);
+        length = appendMillis(text, length, histogram.getPercentile(0.95));
+        length = append(text, length, P99);
+        length = appendMillis(text, length, histogram.getPercentile(0.99));
+        return append(text, length, UNIT);
+    }
+
+    // 不具合の報告に添付できるように、全区間のパーセンタイルを表にして書き出す
+    public void writeReport(Writer out) throws IOException {
+        out.write("section,count,p50_ms,p95_ms,p99_ms,max_ms\n");
+        for (int i = 0; i < names.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            out.write(names[i]);
+            out.write(',');
+            out.write(Integer.toString(histogram.getCount()));
+            for (double percentile : PERCENTILES) {
+                out.write(',');
+                out.write(toMillis(histogram.getPercentile(percentile)));
+            }
+            out.write(',');
+            out.write(toMillis(histogram.getMax()));
+            out.write('\n');
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1e6);
+    }
+
+    private static int append(char[] text, int position, char[] chars) {
+        System.arraycopy(chars, 0, text, position, chars.length);
+        return position + chars.length;
+    }
+
+    // ミリ秒に直して小数第２位まで書き込む。整数部は最大5桁にそろえる
+    private static int appendMillis(char[] text, int position, long nanos) {
+        long hundredths = Math.min((nanos + 5000) / 10000, 9999999L);
+        int end = position + 8;
+        int digit = end;
+        text[--digit] = (char) ('0' + hundredths % 10);
+        hundredths /= 10;
+        text[--digit] = (char) ('0' + hundredths % 10);
+        hundredths /= 10;
+        text[--digit] = '.';
+        do {
+            text[--digit] = (char) ('0' + hundredths % 10);
+            hundredths /= 10;
+        } while (hundredths != 0);
+        while (digit > position) {
+            text[--digit] = ' ';
+        }
+        return end;
+    }
+}
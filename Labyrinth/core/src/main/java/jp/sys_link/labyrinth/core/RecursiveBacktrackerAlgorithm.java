@@ -0,0 +1,53 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+// 穴掘り法(再帰的バックトラック)。まだ掘っていない隣の部屋へ進めるだけ進み、行き止まりになったら戻る
+// 再帰の代わりに部屋の数だけの配列をスタックにするので、大きな迷路でもスタックがあふれない
+// 長い一本道と少ない分岐の迷路になる
+public class RecursiveBacktrackerAlgorithm implements MazeAlgorithm {
+
+    @Override
+    public void generate(BlockGrid map, Random rand) {
+        CellMaze.fillWalls(map);
+
+        int cellWidth = CellMaze.cellWidth(map);
+        int cellHeight = CellMaze.cellHeight(map);
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            return;
+        }
+        int cells = cellWidth * cellHeight;
+
+        // 各部屋は一度しか積まないので、部屋の数で足りる
+        int[] stack = new int[cells];
+        int[] neighbors = new int[4];
+        int[] candidates = new int[4];
+
+        int start = rand.nextInt(cells);
+        CellMaze.openCell(map, start, cellWidth);
+        stack[0] = start;
+        int top = 1;
+
+        while (top > 0) {
+            int cell = stack[top - 1];
+
+            // まだ掘っていない隣の部屋
+            int neighborCount = CellMaze.neighbors(cell, cellWidth, cellHeight, neighbors);
+            int count = 0;
+            for (int i = 0; i < neighborCount; i++) {
+                if (!CellMaze.isOpen(map, neighbors[i], cellWidth)) {
+                    candidates[count++] = neighbors[i];
+                }
+            }
+
+            if (count == 0) {
+                top--;
+                continue;
+            }
+
+            int next = candidates[rand.nextInt(count)];
+            CellMaze.connect(map, cell, next, cellWidth);
+            stack[top++] = next;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package jp.sys_link.labyrinth.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// １ステージ分の記録。迷路を作り直すための情報と、物理計算のステップごとのフィルタ後のセンサーの値を持つ
+// 記録した値をPhysics.stepに渡し直せば、同じ軌跡と同じ結果(ゴールか穴)になる
+//
+// ファイルの形式は、全ての整数を可変長(7ビットずつ、下位から)で書き込む
+//   "LBRP"、バージョン
+//   シード、迷路の種類、縦横のブロック数、ブロックサイズ、ボールの幅と高さ
+//   入力の数、入力ごとに(前の入力からのステップ数、前の入力とのx、yのビット列の差)
+//   結果、結果が出たステップ、最後のボールの位置
+// 符号のある値はジグザグ符号化する。センサーの値は少しずつ変わるので、floatのビット列の差は小さくなる
+public class Replay {
+
+    private static final byte[] MAGIC = {'L', 'B', 'R', 'P'};
+    // 2: 穴の置き方が変わり、同じシードでも以前とは違う迷路になったので、バージョン1の記録は再生できない
+    private static final int VERSION = 2;
+
+    // 迷路の種類。LabyrinthGeneratorで作る画面サイズの迷路か、ChunkedLabyrinthの巨大迷路か
+    public static final int STAGE_GENERATED = 0;
+    public static final int STAGE_CHUNKED = 1;
+
+    // ステージの結果
+    public static final int OUTCOME_NONE = 0;
+    public static final int OUTCOME_GOAL = 1;
+    public static final int OUTCOME_HOLE = 2;
+
+    public final int seed;
+    public final int stageType;
+    public final int horizontalBlockNum;
+    public final int verticalBlockNum;
+    public final int blockSize;
+    public final int ballWidth;
+    public final int ballHeight;
+
+    // 入力ごとの、ステージ開始からの物理計算のステップ数と、フィルタ後のセンサーの値
+    // ステップ数にPhysics.STEP_NSを掛けると、ステージ開始からの時刻になる
+    final int inputCount;
+    final int[] steps;
+    final float[] xs;
+    final float[] ys;
+
+    // 記録したときの結果と、最後のボールの位置
+    public final int outcome;
+    public final int outcomeStep;
+    public final int finalLeft;
+    public final int finalTop;
+
+    Replay(int seed, int stageType, int horizontalBlockNum, int verticalBlockNum,
+           int blockSize, int ballWidth, int ballHeight,
+           int inputCount, int[] steps, float[] xs, float[] ys,
+           int outcome, int outcomeStep, int finalLeft, int finalTop) {
+        this.seed = seed;
+        this.stageType = stageType;
+        this.horizontalBlockNum = horizontalBlockNum;
+        this.verticalBlockNum = verticalBlockNum;
+        this.blockSize = blockSize;
+        this.ballWidth = ballWidth;
+        this.ballHeight = ballHeight;
+        this.inputCount = inputCount;
+        this.steps = steps;
+        this.xs = xs;
+        this.ys = ys;
+        this.outcome = outcome;
+        this.outcomeStep = outcomeStep;
+        this.finalLeft = finalLeft;
+        this.finalTop = finalTop;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getStep(int index) {
+        return steps[index];
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    public void write(OutputStream out) throws IOException {
+        // 小さな書き込みを何度も行うので、まとめてから書き出す
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + inputCount * 4);
+        buffer.write(MAGIC);
+        writeVarint(buffer, VERSION);
+
+        writeVarint(buffer, zigzag(seed));
+        writeVarint(buffer, stageType);
+        writeVarint(buffer, horizontalBlockNum);
+        writeVarint(buffer, verticalBlockNum);
+        writeVarint(buffer, blockSize);
+        writeVarint(buffer, ballWidth);
+        writeVarint(buffer, ballHeight);
+
+        writeVarint(buffer, inputCount);
+        int previousStep = 0;
+        int previousX = 0;
+        int previousY = 0;
+        for (int i = 0; i < inputCount; i++) {
+            int x = Float.floatToRawIntBits(xs[i]);
+            int y = Float.floatToRawIntBits(ys[i]);
+            writeVarint(buffer, steps[i] - previousStep);
+            writeVarint(buffer, zigzag(x - previousX));
+            writeVarint(buffer, zigzag(y - previousY));
+            previousStep = steps[i];
+            previousX = x;
+            previousY = y;
+        }
+
+        writeVarint(buffer, outcome);
+        writeVarint(buffer, outcomeStep);
+        writeVarint(buffer, zigzag(finalLeft));
+        writeVarint(buffer, zigzag(finalTop));
+
+        buffer.writeTo(out);
+    }
+
+    public static Replay read(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (readByte(in) != b) {
+                throw new IOException("リプレイのファイルではありません");
+            }
+        }
+        int version = readVarint(in);
+        if (version != VERSION) {
+            throw new IOException("対応していないリプレイのバージョンです: " + version);
+        }
+
+        int seed = unzigzag(readVarint(in));
+        int stageType = readVarint(in);
+        int horizontalBlockNum = readVarint(in);
+        int verticalBlockNum = readVarint(in);
+        int blockSize = readVarint(in);
+        int ballWidth = readVarint(in);
+        int ballHeight = readVarint(in);
+
+        int inputCount = readVarint(in);
+        if (inputCount < 0) {
+            throw new IOException("入力の数が不正です: " + inputCount);
+        }
+        int[] steps = new int[inputCount];
+        float[] xs = new float[inputCount];
+        float[] ys = new float[inputCount];
+        int step = 0;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < inputCount; i++) {
+            step += readVarint(in);
+            x += unzigzag(readVarint(in));
+            y += unzigzag(readVarint(in));
+            steps[i] = step;
+            xs[i] = Float.intBitsToFloat(x);
+            ys[i] = Float.intBitsToFloat(y);
+        }
+
+        int outcome = readVarint(in);
+        int outcomeStep = readVarint(in);
+        int finalLeft = unzigzag(readVarint(in));
+        int finalTop = unzigzag(readVarint(in));
+
+        return new Replay(seed, stageType, horizontalBlockNum, verticalBlockNum, blockSize, ballWidth, ballHeight,
+                inputCount, steps, xs, ys, outcome, outcomeStep, finalLeft, finalTop);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("可変長の整数が長すぎます");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("リプレイのファイルが途中で終わっています");
+        }
+        return b;
+    }
+}
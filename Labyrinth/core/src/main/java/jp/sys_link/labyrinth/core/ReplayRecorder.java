@@ -0,0 +1,52 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Arrays;
+
+// 遊んでいる間のフィルタ後のセンサーの値を、物理計算のステップごとに記録する。描画スレッドだけが使う
+public class ReplayRecorder {
+
+    private final int seed;
+    private final int stageType;
+    private final int horizontalBlockNum;
+    private final int verticalBlockNum;
+    private final int blockSize;
+    private final int ballWidth;
+    private final int ballHeight;
+
+    private int inputCount;
+    private int[] steps = new int[256];
+    private float[] xs = new float[256];
+    private float[] ys = new float[256];
+
+    public ReplayRecorder(int seed, int stageType, int horizontalBlockNum, int verticalBlockNum,
+                          int blockSize, int ballWidth, int ballHeight) {
+        this.seed = seed;
+        this.stageType = stageType;
+        this.horizontalBlockNum = horizontalBlockNum;
+        this.verticalBlockNum = verticalBlockNum;
+        this.blockSize = blockSize;
+        this.ballWidth = ballWidth;
+        this.ballHeight = ballHeight;
+    }
+
+    // ステージ開始からstep回目の物理計算で、Physics.stepに(x, y)を渡したことを記録する
+    public void record(int step, float x, float y) {
+        if (inputCount == steps.length) {
+            int capacity = inputCount * 2;
+            steps = Arrays.copyOf(steps, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+        steps[inputCount] = step;
+        xs[inputCount] = x;
+        ys[inputCount] = y;
+        inputCount++;
+    }
+
+    // 記録を終えて、結果と最後のボールの位置と一緒にReplayにする
+    public Replay finish(int outcome, int outcomeStep, int finalLeft, int finalTop) {
+        return new Replay(seed, stageType, horizontalBlockNum, verticalBlockNum, blockSize, ballWidth, ballHeight,
+                inputCount, Arrays.copyOf(steps, inputCount), Arrays.copyOf(xs, inputCount),
+                Arrays.copyOf(ys, inputCount), outcome, outcomeStep, finalLeft, finalTop);
+    }
+}
@@ -0,0 +1,141 @@
+package jp.sys_link.labyrinth.core;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// 記録したReplayを、画面やセンサーを使わずにJVMだけで再生する
+// 迷路をシードから作り直し、記録したセンサーの値をステップごとにPhysics.stepへ渡して、
+// 記録したときと同じ軌跡と結果になるかを確かめる
+public class ReplayRunner {
+
+    // 再生した結果
+    public static class Result {
+        public final int outcome;
+        public final int outcomeStep;
+        public final int finalLeft;
+        public final int finalTop;
+
+        Result(int outcome, int outcomeStep, int finalLeft, int finalTop) {
+            this.outcome = outcome;
+            this.outcomeStep = outcomeStep;
+            this.finalLeft = finalLeft;
+            this.finalTop = finalTop;
+        }
+
+        // 記録したときと同じ結果になったか
+        public boolean matches(Replay replay) {
+            return outcome == replay.outcome && outcomeStep == replay.outcomeStep
+                    && finalLeft == replay.finalLeft && finalTop == replay.finalTop;
+        }
+
+        @Override
+        public String toString() {
+            return outcomeName(outcome) + " step=" + outcomeStep + " left=" + finalLeft + " top=" + finalTop;
+        }
+    }
+
+    // 最初に起きたゴールか穴だけを覚えておく
+    private static class OutcomeCallback implements BlockMap.Callback {
+        int outcome = Replay.OUTCOME_NONE;
+
+        @Override
+        public void onGoal() {
+            if (outcome == Replay.OUTCOME_NONE) {
+                outcome = Replay.OUTCOME_GOAL;
+            }
+        }
+
+        @Override
+        public void onHole() {
+            if (outcome == Replay.OUTCOME_NONE) {
+                outcome = Replay.OUTCOME_HOLE;
+            }
+        }
+    }
+
+    private ReplayRunner() {
+    }
+
+    public static Result run(Replay replay) {
+        OutcomeCallback callback = new OutcomeCallback();
+        BlockMap map = createMap(replay, callback);
+
+        BallBody ball = new BallBody(map.getStartLeft(), map.getStartTop(), replay.ballWidth, replay.ballHeight);
+        ball.setOnMoveListener(map);
+
+        // アプリと同じく、ゴールか穴に着いたステップでボールを止める
+        for (int i = 0; i < replay.inputCount; i++) {
+            Physics.step(ball, replay.xs[i], replay.ys[i]);
+            if (callback.outcome != Replay.OUTCOME_NONE) {
+                return new Result(callback.outcome, replay.steps[i], ball.getLeft(), ball.getTop());
+            }
+        }
+        int lastStep = replay.inputCount > 0 ? replay.steps[replay.inputCount - 1] : 0;
+        return new Result(Replay.OUTCOME_NONE, lastStep, ball.getLeft(), ball.getTop());
+    }
+
+    // 記録したときと同じ迷路を作る
+    static BlockMap createMap(Replay replay, BlockMap.Callback callback) {
+        switch (replay.stageType) {
+            case Replay.STAGE_GENERATED:
+                return new BlockMap(LabyrinthGenerator.getMap(replay.seed, replay.horizontalBlockNum,
+                        replay.verticalBlockNum), replay.blockSize, callback);
+            case Replay.STAGE_CHUNKED:
+                ChunkedLabyrinth labyrinth = new ChunkedLabyrinth(replay.seed, replay.horizontalBlockNum,
+                        replay.verticalBlockNum);
+                return new BlockMap(labyrinth, labyrinth.getStartX(), labyrinth.getStartY(), replay.blockSize,
+                        callback);
+        }
+        throw new IllegalArgumentException("迷路の種類が不正です: " + replay.stageType);
+    }
+
+    static String outcomeName(int outcome) {
+        switch (outcome) {
+            case Replay.OUTCOME_GOAL:
+                return "GOAL";
+            case Replay.OUTCOME_HOLE:
+                return "HOLE";
+        }
+        return "NONE";
+    }
+
+    public static Replay load(String path) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(path));
+        try {
+            return Replay.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    // 使い方: ReplayRunner <リプレイのファイル>...
+    // ファイルごとに再生して結果を表示し、１つでも記録と違えば終了コード1で終わる
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: ReplayRunner <replay file>...");
+            System.exit(2);
+        }
+
+        boolean allMatched = true;
+        for (String path : args) {
+            Replay replay = load(path);
+
+            long start = System.nanoTime();
+            Result result = run(replay);
+            long elapsed = System.nanoTime() - start;
+
+            boolean matched = result.matches(replay);
+            allMatched &= matched;
+            System.out.println(path + ": seed=" + replay.seed + " " + replay.horizontalBlockNum + "x"
+                    + replay.verticalBlockNum + " inputs=" + replay.inputCount + " -> " + result
+                    + (matched ? " OK" : " MISMATCH (recorded " + outcomeName(replay.outcome)
+                    + " step=" + replay.outcomeStep + " left=" + replay.finalLeft + " top=" + replay.finalTop + ")")
+                    + " in " + elapsed / 1000 + "us");
+        }
+        if (!allMatched) {
+            System.exit(1);
+        }
+    }
+}
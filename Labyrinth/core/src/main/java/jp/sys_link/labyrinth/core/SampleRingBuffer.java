@@ -0,0 +1,68 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// 時刻つきの加速度のサンプルをためておくリングバッファ
+// センサーのスレッドが書き込み、描画スレッドが物理計算のたびにまとめて読み出す
+// 書き手と読み手が１つずつなので、ロックを使わずに書き込み位置と読み出し位置だけを受け渡す
+public class SampleRingBuffer {
+
+    private final int mask;
+    private final long[] timestamps;
+    private final float[] xs;
+    private final float[] ys;
+
+    // これまでに書き込んだ数と読み出した数。配列の添字はmaskとの論理積で求める
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+
+    // 満杯で捨てたサンプルの数
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public SampleRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("容量は2のべき乗にしてください: " + capacity);
+        }
+        mask = capacity - 1;
+        timestamps = new long[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+    }
+
+    // 書き手のスレッドだけが呼ぶ。満杯のときはサンプルを捨ててfalseを返す
+    public boolean offer(long timestamp, float x, float y) {
+        long write = writeCount.get();
+        if (write - readCount.get() > mask) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        int index = (int) write & mask;
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        // 値を書き終えてから書き込み位置を進めるので、読み手は書きかけのサンプルを読まない
+        writeCount.lazySet(write + 1);
+        return true;
+    }
+
+    // 読み手のスレッドだけが呼ぶ。たまっているサンプルを古い順にfilterへ渡し、渡した数を返す
+    public int drainTo(AccelerationFilter filter) {
+        long read = readCount.get();
+        long write = writeCount.get();
+        for (long i = read; i < write; i++) {
+            int index = (int) i & mask;
+            filter.update(timestamps[index], xs[index], ys[index]);
+        }
+        readCount.lazySet(write);
+        return (int) (write - read);
+    }
+
+    // 読み手のスレッドだけが呼ぶ。たまっているサンプルを読まずに捨てる
+    public void clear() {
+        readCount.lazySet(writeCount.get());
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
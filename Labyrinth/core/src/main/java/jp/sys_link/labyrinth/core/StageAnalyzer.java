@@ -0,0 +1,228 @@
+package jp.sys_link.labyrinth.core;
+
+// 生成した迷路がクリアできるかを調べ、最短経路の長さと難しさを求める
+// 穴は壁を置き換えて作られるので、穴を通らないとゴールに着けない迷路はクリアできない
+public final class StageAnalyzer {
+
+    public enum Verdict {
+        // 穴を通らずにゴールに着ける
+        WINNABLE,
+        // 穴を通ればゴールに着けるが、穴を避ける道がない
+        BLOCKED_BY_HOLE,
+        // 穴を通ってもゴールに着けない
+        UNREACHABLE,
+    }
+
+    // 難しさの重み。曲がり角と、経路に接する穴の多さを経路長に加える
+    static final int TURN_WEIGHT = 2;
+    static final int HOLE_WEIGHT = 10;
+
+    public static class Report {
+        public final int horizontalBlockNum;
+        public final int verticalBlockNum;
+        public final Verdict verdict;
+        // スタートからゴールまでの最短経路のブロック数。クリアできなければ-1
+        public final int pathLength;
+        // 最短経路で向きを変える回数
+        public final int turns;
+        // 迷路全体の穴の数
+        public final int holeCount;
+        // 最短経路の各ブロックが穴と接している数の合計
+        public final int holesAlongPath;
+        // 行き止まりになっている床の数
+        public final int deadEnds;
+        public final int difficulty;
+
+        Report(int horizontalBlockNum, int verticalBlockNum, Verdict verdict, int pathLength, int turns,
+               int holeCount, int holesAlongPath, int deadEnds) {
+            this.horizontalBlockNum = horizontalBlockNum;
+            this.verticalBlockNum = verticalBlockNum;
+            this.verdict = verdict;
+            this.pathLength = pathLength;
+            this.turns = turns;
+            this.holeCount = holeCount;
+            this.holesAlongPath = holesAlongPath;
+            this.deadEnds = deadEnds;
+            this.difficulty = verdict == Verdict.WINNABLE
+                    ? pathLength + turns * TURN_WEIGHT + holesAlongPath * HOLE_WEIGHT
+                    : -1;
+        }
+
+        public boolean isWinnable() {
+            return verdict == Verdict.WINNABLE;
+        }
+    }
+
+    private StageAnalyzer() {
+    }
+
+    public static Report analyze(LabyrinthGenerator.MapResult map) {
+        BlockGrid grid = map.grid;
+        int horizontal = grid.getWidth();
+        int vertical = grid.getHeight();
+        int stride = grid.getStride();
+
+        int goal = -1;
+        int holeCount = 0;
+        int deadEnds = 0;
+        for (int y = 0; y < vertical; y++) {
+            for (int x = 0; x < horizontal; x++) {
+                int type = grid.get(x, y);
+                if (type == LabyrinthGenerator.GOAL) {
+                    goal = grid.index(x, y);
+                } else if (type == LabyrinthGenerator.HOLE) {
+                    holeCount++;
+                }
+                if (type != LabyrinthGenerator.WALL && type != LabyrinthGenerator.HOLE
+                        && countOpen(grid, x, y) == 1) {
+                    deadEnds++;
+                }
+            }
+        }
+
+        int start = grid.index(map.startX, map.startY);
+        int[] steps = calcSafeStep(grid, start);
+        if (goal < 0 || steps[goal] == 0) {
+            // 穴を通れば着けるのかどうかで、原因を分けておく
+            boolean throughHole = goal >= 0 && LabyrinthGenerator.calcStep(grid, map.startY, map.startX)[goal] != 0;
+            return new Report(horizontal, vertical,
+                    throughHole ? Verdict.BLOCKED_BY_HOLE : Verdict.UNREACHABLE,
+                    -1, 0, holeCount, 0, deadEnds);
+        }
+
+        // ゴールから距離が1ずつ減るブロックをたどって最短経路を復元する
+        // 同じ距離の候補があれば、曲がらずに進める方を選ぶ
+        int turns = 0;
+        int holesAlongPath = 0;
+        int previousDelta = 0;
+        int index = goal;
+        while (true) {
+            holesAlongPath += countHoles(grid, index);
+            if (index == start) {
+                break;
+            }
+            int next = -1;
+            int x = index % stride;
+            int y = index / stride;
+            int[] deltas = {previousDelta, 1, -1, stride, -stride};
+            for (int delta : deltas) {
+                if (delta == 0) {
+                    continue;
+                }
+                if ((delta == 1 && x + 1 >= horizontal) || (delta == -1 && x == 0)
+                        || (delta == stride && y + 1 >= vertical) || (delta == -stride && y == 0)) {
+                    continue;
+                }
+                if (steps[index + delta] == steps[index] - 1) {
+                    next = index + delta;
+                    if (previousDelta != 0 && delta != previousDelta) {
+                        turns++;
+                    }
+                    previousDelta = delta;
+                    break;
+                }
+            }
+            index = next;
+        }
+
+        return new Report(horizontal, vertical, Verdict.WINNABLE, steps[goal], turns,
+                holeCount, holesAlongPath, deadEnds);
+    }
+
+    // 壁と穴を避けて、スタートから各ブロックまでの距離を幅優先探索で計算する
+    // 結果の形はLabyrinthGenerator.calcStepと同じ
+    static int[] calcSafeStep(BlockGrid grid, int start) {
+        int horizontal = grid.getWidth();
+        int vertical = grid.getHeight();
+        int stride = grid.getStride();
+
+        int[] steps = new int[vertical * stride];
+        int[] queue = new int[vertical * horizontal];
+        int head = 0;
+        int tail = 0;
+
+        steps[start] = 1;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int index = queue[head++];
+            int y = index / stride;
+            int x = index % stride;
+            int score = steps[index] + 1;
+
+            if (x + 1 < horizontal) {
+                tail = visitSafe(grid, index + 1, steps, score, queue, tail);
+            }
+            if (y + 1 < vertical) {
+                tail = visitSafe(grid, index + stride, steps, score, queue, tail);
+            }
+            if (x - 1 >= 0) {
+                tail = visitSafe(grid, index - 1, steps, score, queue, tail);
+            }
+            if (y - 1 >= 0) {
+                tail = visitSafe(grid, index - stride, steps, score, queue, tail);
+            }
+        }
+        return steps;
+    }
+
+    private static int visitSafe(BlockGrid grid, int index, int[] steps, int score, int[] queue, int tail) {
+        if (steps[index] != 0) {
+            return tail;
+        }
+        int type = grid.get(index);
+        if (type == LabyrinthGenerator.WALL || type == LabyrinthGenerator.HOLE) {
+            return tail;
+        }
+        steps[index] = score;
+        queue[tail++] = index;
+        return tail;
+    }
+
+    // 上下左右のうち、壁でも穴でもないブロックの数
+    private static int countOpen(BlockGrid grid, int x, int y) {
+        int open = 0;
+        if (isOpen(grid, x + 1, y)) {
+            open++;
+        }
+        if (isOpen(grid, x - 1, y)) {
+            open++;
+        }
+        if (isOpen(grid, x, y + 1)) {
+            open++;
+        }
+        if (isOpen(grid, x, y - 1)) {
+            open++;
+        }
+        return open;
+    }
+
+    private static boolean isOpen(BlockGrid grid, int x, int y) {
+        if (!grid.contains(x, y)) {
+            return false;
+        }
+        int type = grid.get(x, y);
+        return type != LabyrinthGenerator.WALL && type != LabyrinthGenerator.HOLE;
+    }
+
+    // 上下左右にある穴の数
+    private static int countHoles(BlockGrid grid, int index) {
+        int stride = grid.getStride();
+        int x = index % stride;
+        int y = index / stride;
+        int holes = 0;
+        if (x + 1 < grid.getWidth() && grid.get(index + 1) == LabyrinthGenerator.HOLE) {
+            holes++;
+        }
+        if (x > 0 && grid.get(index - 1) == LabyrinthGenerator.HOLE) {
+            holes++;
+        }
+        if (y + 1 < grid.getHeight() && grid.get(index + stride) == LabyrinthGenerator.HOLE) {
+            holes++;
+        }
+        if (y > 0 && grid.get(index - stride) == LabyrinthGenerator.HOLE) {
+            holes++;
+        }
+        return holes;
+    }
+}
@@ -0,0 +1,272 @@
+package jp.sys_link.labyrinth.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 生成した迷路を、シードと縦横のブロック数ごとに１つのファイルにしてディスクに保存する
+// 迷路はこの３つとLabyrinthGenerator.ALGORITHM_VERSIONだけで決まるので、次に起動したときも生成せずに読み込める
+// ファイルの合計が maxBytes を超えたら、最後に使ったのが古いものから消す
+// 使った順番はメモリ上に持ち、ディレクトリを調べるのは最初に使うときの一度だけにする
+//
+// ファイルの形式(整数はビッグエンディアン)
+//   "LBST"、形式のバージョン、ALGORITHM_VERSION、シード、横と縦のブロック数(各4バイト)
+//   スタートとゴールの座標(各4バイト)
+//   ブロックごとに2ビット(床0、壁1、穴2)を、行優先に1バイトへ4つずつ下位から詰めたもの
+// スタートとゴールは座標で持つので、ブロックは3種類で済む
+public class StageCache {
+
+    private static final int MAGIC = ('L' << 24) | ('B' << 16) | ('S' << 8) | 'T';
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 * 10;
+
+    private static final int CODE_FLOOR = 0;
+    private static final int CODE_WALL = 1;
+    private static final int CODE_HOLE = 2;
+
+    private static final String SUFFIX = ".lbst";
+
+    // 多くのファイルシステムでは、小さなファイルも4KiB単位で場所を取るので、合計はこの単位に切り上げて数える
+    static final long BLOCK_BYTES = 4096;
+
+    private final File directory;
+    private final long maxBytes;
+
+    // ファイル名から、そのファイルが取る大きさへの対応。最後に使ったのが古い順に並ぶ
+    // 最初に使うときにディレクトリから作り、それからはこれだけを見て消すものを決める
+    private LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    public StageCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    // 保存した迷路を読み込む。なければ、または読めなければnull
+    public synchronized LabyrinthGenerator.MapResult load(int seed, int horizontalBlockNum, int verticalBlockNum) {
+        File file = fileOf(seed, horizontalBlockNum, verticalBlockNum);
+        // 取り出すと、最近使ったものとして消す順番が後ろになる
+        if (entries().get(file.getName()) == null) {
+            return null;
+        }
+        try {
+            LabyrinthGenerator.MapResult map = read(file, seed, horizontalBlockNum, verticalBlockNum);
+            if (map == null) {
+                // 古いバージョンや壊れたファイルは消して、生成し直したものに置き換える
+                remove(file);
+                return null;
+            }
+            return map;
+        } catch (IOException e) {
+            // 端末がキャッシュを消したときなど、ファイルがなくなっていても読めない
+            remove(file);
+            return null;
+        }
+    }
+
+    // 迷路を保存し、上限を超えた分の古いファイルを消す
+    public synchronized void store(int seed, int horizontalBlockNum, int verticalBlockNum,
+                                   LabyrinthGenerator.MapResult map) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("ディレクトリを作れません: " + directory);
+        }
+        File file = fileOf(seed, horizontalBlockNum, verticalBlockNum);
+
+        // 書き込み途中のファイルを読まないように、別の名前で書いてから置き換える
+        byte[] bytes = encode(seed, map);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(temporary);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("ファイルを置き換えられません: " + file);
+        }
+
+        long size = roundUp(bytes.length);
+        Long previous = entries().put(file.getName(), size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    // キャッシュにあるファイルが取っている大きさの合計
+    synchronized long getTotalBytes() {
+        entries();
+        return totalBytes;
+    }
+
+    // 最初に使うときに一度だけディレクトリを調べ、更新時刻が古い順に並べる
+    // 読み込んでも更新時刻は変えないので、前回起動したときに使った順番ではなく、保存した順番になる
+    private LinkedHashMap<String, Long> entries() {
+        if (entries != null) {
+            return entries;
+        }
+        entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        totalBytes = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return entries;
+        }
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+        for (Integer i : order) {
+            File file = files[i];
+            if (file.getName().endsWith(SUFFIX) && file.isFile()) {
+                long size = roundUp(file.length());
+                entries.put(file.getName(), size);
+                totalBytes += size;
+            }
+        }
+        return entries;
+    }
+
+    private void remove(File file) {
+        Long size = entries.remove(file.getName());
+        if (size != null) {
+            totalBytes -= size;
+        }
+        file.delete();
+    }
+
+    private static long roundUp(long bytes) {
+        return (bytes + BLOCK_BYTES - 1) / BLOCK_BYTES * BLOCK_BYTES;
+    }
+
+    // シードと大きさからファイル名を決める。内容はこの組み合わせだけで決まる
+    private File fileOf(int seed, int horizontalBlockNum, int verticalBlockNum) {
+        return new File(directory, "stage-" + seed + "-" + horizontalBlockNum + "x" + verticalBlockNum + SUFFIX);
+    }
+
+    static byte[] encode(int seed, LabyrinthGenerator.MapResult map) {
+        BlockGrid grid = map.grid;
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int cells = width * height;
+
+        int goal = -1;
+        byte[] bytes = new byte[HEADER_BYTES + (cells + 3) / 4];
+        int offset = HEADER_BYTES;
+        for (int i = 0; i < cells; i++) {
+            int type = grid.get(i);
+            int code;
+            if (type == LabyrinthGenerator.WALL) {
+                code = CODE_WALL;
+            } else if (type == LabyrinthGenerator.HOLE) {
+                code = CODE_HOLE;
+            } else {
+                if (type == LabyrinthGenerator.GOAL) {
+                    goal = i;
+                }
+                code = CODE_FLOOR;
+            }
+            bytes[offset + i / 4] |= (byte) (code << ((i % 4) * 2));
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(bytes, 0, HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(LabyrinthGenerator.ALGORITHM_VERSION);
+        header.putInt(seed);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(map.startX);
+        header.putInt(map.startY);
+        header.putInt(goal < 0 ? -1 : goal % width);
+        header.putInt(goal < 0 ? -1 : goal / width);
+        return bytes;
+    }
+
+    // メモリマップしたファイルから迷路を読む。ヘッダが合わなければnull
+    private static LabyrinthGenerator.MapResult read(File file, int seed, int horizontalBlockNum,
+                                                     int verticalBlockNum) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return decode(buffer, seed, horizontalBlockNum, verticalBlockNum);
+        } finally {
+            raf.close();
+        }
+    }
+
+    static LabyrinthGenerator.MapResult decode(ByteBuffer buffer, int seed, int horizontalBlockNum,
+                                               int verticalBlockNum) {
+        if (buffer.remaining() < HEADER_BYTES
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION
+                || buffer.getInt() != LabyrinthGenerator.ALGORITHM_VERSION
+                || buffer.getInt() != seed
+                || buffer.getInt() != horizontalBlockNum
+                || buffer.getInt() != verticalBlockNum) {
+            return null;
+        }
+        int startX = buffer.getInt();
+        int startY = buffer.getInt();
+        int goalX = buffer.getInt();
+        int goalY = buffer.getInt();
+
+        int cells = horizontalBlockNum * verticalBlockNum;
+        if (buffer.remaining() != (cells + 3) / 4) {
+            return null;
+        }
+
+        BlockGrid grid = new BlockGrid(horizontalBlockNum, verticalBlockNum);
+        int offset = buffer.position();
+        for (int i = 0; i < cells; i++) {
+            int code = (buffer.get(offset + i / 4) >> ((i % 4) * 2)) & 3;
+            if (code == CODE_WALL) {
+                grid.set(i, LabyrinthGenerator.WALL);
+            } else if (code == CODE_HOLE) {
+                grid.set(i, LabyrinthGenerator.HOLE);
+            } else if (code != CODE_FLOOR) {
+                return null;
+            }
+        }
+        if (grid.contains(startX, startY)) {
+            grid.set(startX, startY, LabyrinthGenerator.START);
+        }
+        if (grid.contains(goalX, goalY)) {
+            grid.set(goalX, goalY, LabyrinthGenerator.GOAL);
+        }
+        return new LabyrinthGenerator.MapResult(grid, startY, startX);
+    }
+
+    // ファイルの合計が上限を超えていれば、最後に使ったのが古いものから消す
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> oldest = iterator.next();
+            totalBytes -= oldest.getValue();
+            iterator.remove();
+            new File(directory, oldest.getKey()).delete();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package jp.sys_link.labyrinth.core;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+// 次に遊ぶステージの迷路を、バックグラウンドのスレッドで先に生成しておく
+// 生成済みの迷路は最近使った順に MAX_STAGES 個まで保持し、穴に落ちたときのやり直しにも使う
+// StageCacheを設定すると、一度生成した迷路はディスクから読み込み、次に起動したときも生成しない
+public class StagePrefetcher {
+
+    // 保持する迷路の数。今のステージ、次のステージと予備の１つ
+    private static final int MAX_STAGES = 3;
+
+    private static StagePrefetcher instance;
+
+    // Activityを作り直しても生成済みの迷路を使えるように、プロセスで１つだけ作る
+    public static synchronized StagePrefetcher getInstance() {
+        if (instance == null) {
+            instance = new StagePrefetcher();
+        }
+        return instance;
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "StagePrefetcher");
+            thread.setDaemon(true);
+            // 描画スレッドの邪魔をしないように、優先度を下げる
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    // ディスクのキャッシュ。設定されていなければ毎回生成する
+    private volatile StageCache cache;
+
+    private final LinkedHashMap<StageKey, Future<LabyrinthGenerator.MapResult>> stages =
+            new LinkedHashMap<StageKey, Future<LabyrinthGenerator.MapResult>>(MAX_STAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(java.util.Map.Entry<StageKey, Future<LabyrinthGenerator.MapResult>> eldest) {
+                    return size() > MAX_STAGES;
+                }
+            };
+
+    public void setCache(StageCache cache) {
+        this.cache = cache;
+    }
+
+    // バックグラウンドで迷路の生成を始める。生成済み、または生成中であれば何もしない
+    public synchronized void prefetch(int seed, int horizontalBlockNum, int verticalBlockNum) {
+        StageKey key = new StageKey(seed, horizontalBlockNum, verticalBlockNum);
+        if (stages.get(key) != null) {
+            return;
+        }
+        stages.put(key, executor.submit(new GenerateTask(key)));
+    }
+
+    // 迷路を取得する。先に生成していなければ、呼び出したスレッドで生成する
+    public LabyrinthGenerator.MapResult getMap(int seed, int horizontalBlockNum, int verticalBlockNum) {
+        StageKey key = new StageKey(seed, horizontalBlockNum, verticalBlockNum);
+
+        Future<LabyrinthGenerator.MapResult> future;
+        FutureTask<LabyrinthGenerator.MapResult> task = null;
+        synchronized (this) {
+            future = stages.get(key);
+            if (future == null) {
+                task = new FutureTask<LabyrinthGenerator.MapResult>(new GenerateTask(key));
+                stages.put(key, task);
+                future = task;
+            }
+        }
+        if (task != null) {
+            task.run();
+        }
+        return await(future);
+    }
+
+    private static LabyrinthGenerator.MapResult await(Future<LabyrinthGenerator.MapResult> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("迷路の生成に失敗しました", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class GenerateTask implements Callable<LabyrinthGenerator.MapResult> {
+        private final StageKey key;
+
+        GenerateTask(StageKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public LabyrinthGenerator.MapResult call() {
+            final StageCache cache = StagePrefetcher.this.cache;
+            if (cache != null) {
+                LabyrinthGenerator.MapResult map = cache.load(key.seed, key.horizontalBlockNum, key.verticalBlockNum);
+                if (map != null) {
+                    return map;
+                }
+            }
+            final LabyrinthGenerator.MapResult map =
+                    LabyrinthGenerator.getMap(key.seed, key.horizontalBlockNum, key.verticalBlockNum);
+            if (cache != null) {
+                // 呼び出したスレッドが描画スレッドのこともあるので、書き込みはバックグラウンドのスレッドで行う
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            cache.store(key.seed, key.horizontalBlockNum, key.verticalBlockNum, map);
+                        } catch (IOException e) {
+                            // 保存できなくても、次に生成し直せばよい
+                        }
+                    }
+                });
+            }
+            return map;
+        }
+    }
+
+    // 迷路はシードと縦横のブロック数だけで決まる
+    private static final class StageKey {
+        final int seed;
+        final int horizontalBlockNum;
+        final int verticalBlockNum;
+
+        StageKey(int seed, int horizontalBlockNum, int verticalBlockNum) {
+            this.seed = seed;
+            this.horizontalBlockNum = horizontalBlockNum;
+            this.verticalBlockNum = verticalBlockNum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StageKey)) {
+                return false;
+            }
+            StageKey other = (StageKey) o;
+            return seed == other.seed
+                    && horizontalBlockNum == other.horizontalBlockNum
+                    && verticalBlockNum == other.verticalBlockNum;
+        }
+
+        @Override
+        public int hashCode() {
+            return (seed * 31 + horizontalBlockNum) * 31 + verticalBlockNum;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package jp.sys_link.labyrinth.core;
+
+// 0.1単位の整数を、小数第１位までの10進数としてchar[]に書き込む
+// 経過時間の表示のように毎フレーム書き直す値を、文字列を作らずに書けるようにする
+// 表示はString.format("%.1f", tenths / 10f)と同じ。tenths / 10が2^20(約12日)以上になると、
+// floatでは小数第１位を表せなくなるので、その範囲ではfloatを通さない正しい値を書く
+public final class TenthsFormat {
+
+    // intの桁数と符号、小数点が入る大きさ
+    public static final int MAX_LENGTH = 13;
+
+    private TenthsFormat() {
+    }
+
+    // textのpositionから書き込み、書き終えた位置を返す
+    public static int format(int tenths, char[] text, int position) {
+        long value = Math.abs((long) tenths);
+
+        // 整数部の桁数。小数第１位と小数点の分を足して、後ろの桁から書き込む
+        int digits = 1;
+        for (long rest = value / 100; rest != 0; rest /= 10) {
+            digits++;
+        }
+        if (tenths < 0) {
+            text[position++] = '-';
+        }
+        int end = position + digits + 2;
+        int digit = end;
+        text[--digit] = (char) ('0' + value % 10);
+        text[--digit] = '.';
+        value /= 10;
+        do {
+            text[--digit] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+}
@@ -0,0 +1,53 @@
+package jp.sys_link.labyrinth.core;
+
+import java.util.Random;
+
+// Wilsonのアルゴリズム。迷路に含まれていない部屋からランダムウォークし、迷路に着いたらループを消した道を掘る
+// すべての全域木が同じ確率でできるので、かたよりのない迷路になる
+// 歩いた向きは部屋ごとの次の部屋として上書きするので、ループを消すために道を覚えておく必要がない
+public class WilsonAlgorithm implements MazeAlgorithm {
+
+    @Override
+    public void generate(BlockGrid map, Random rand) {
+        CellMaze.fillWalls(map);
+
+        int cellWidth = CellMaze.cellWidth(map);
+        int cellHeight = CellMaze.cellHeight(map);
+        if (cellWidth <= 0 || cellHeight <= 0) {
+            return;
+        }
+        int cells = cellWidth * cellHeight;
+
+        // ランダムウォークで最後に進んだ先の部屋
+        int[] next = new int[cells];
+        int[] neighbors = new int[4];
+
+        CellMaze.openCell(map, rand.nextInt(cells), cellWidth);
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (CellMaze.isOpen(map, cell, cellWidth)) {
+                continue;
+            }
+
+            // 迷路に着くまで歩く。同じ部屋に戻れば、その部屋の次の部屋が上書きされてループが消える
+            int current = cell;
+            while (!CellMaze.isOpen(map, current, cellWidth)) {
+                int count = CellMaze.neighbors(current, cellWidth, cellHeight, neighbors);
+                next[current] = neighbors[rand.nextInt(count)];
+                current = next[current];
+            }
+
+            // ループを消した道を、迷路に着くまで掘る
+            current = cell;
+            while (true) {
+                int to = next[current];
+                boolean reached = CellMaze.isOpen(map, to, cellWidth);
+                CellMaze.connect(map, current, to, cellWidth);
+                if (reached) {
+                    break;
+                }
+                current = to;
+            }
+        }
+    }
+}
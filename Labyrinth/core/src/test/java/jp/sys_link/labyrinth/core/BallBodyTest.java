@@ -0,0 +1,200 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// BlockMapのsweepVerticalとsweepHorizontalで一度に動かしたときに、
+// canMoveで1pxずつ進めて壁の手前で止めたときと同じ位置で止まり、同じ順番でゴールと穴を通知することを確かめる
+public class BallBodyTest {
+
+    private static final int BLOCK_SIZE = 40;
+    private static final int BALL_SIZE = Math.round(BLOCK_SIZE * Physics.BALL_SCALE);
+
+    private static final int TRACE_LENGTH = 2000;
+
+    private static final String GOAL = "goal";
+    private static final String HOLE = "hole";
+
+    // 通知された順に記録する
+    private static class RecordingCallback implements BlockMap.Callback {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void onGoal() {
+            events.add(GOAL);
+        }
+
+        @Override
+        public void onHole() {
+            events.add(HOLE);
+        }
+    }
+
+    @Test
+    public void sweepStopsWhereOnePixelSteppingStops() {
+        int[][] sizes = {{21, 37}, {11, 19}, {31, 31}};
+        // 壁の厚さ(BLOCK_SIZE - 2)より大きい移動量も含める
+        float[] maxOffsets = {3f, 30f, 60f, 120f};
+        for (int seed = 0; seed < 20; seed++) {
+            for (int[] size : sizes) {
+                for (float maxOffset : maxOffsets) {
+                    LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, size[0], size[1]);
+                    compareTrace(map.grid, map.startX, map.startY, new Random(seed), maxOffset,
+                            "seed " + seed + ", " + size[0] + "x" + size[1] + ", max " + maxOffset);
+                }
+            }
+        }
+    }
+
+    // 傾きを模したランダムウォークの移動量を順に与え、１ステップごとに位置と通知を比べる
+    private static void compareTrace(BlockGrid grid, int startX, int startY, Random rand, float maxOffset,
+                                     String message) {
+        RecordingCallback sweepEvents = new RecordingCallback();
+        BlockMap sweepMap = new BlockMap(grid, startX, startY, BLOCK_SIZE, sweepEvents);
+        BallBody body = new BallBody(sweepMap.getStartLeft(), sweepMap.getStartTop(), BALL_SIZE, BALL_SIZE);
+        body.setOnMoveListener(sweepMap);
+
+        // 1pxずつの試行では途中の位置でも通知が起きるので、通知しないマップで止まる位置だけを求め、
+        // 止まった位置で改めて通知を調べる
+        BlockMap probeMap = new BlockMap(grid, startX, startY, BLOCK_SIZE, new RecordingCallback());
+        RecordingCallback referenceEvents = new RecordingCallback();
+        BlockMap referenceMap = new BlockMap(grid, startX, startY, BLOCK_SIZE, referenceEvents);
+        int left = body.getLeft();
+        int top = body.getTop();
+
+        float x = 0;
+        float y = 0;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            x = clamp(x + (rand.nextFloat() - 0.5f) * maxOffset * 0.4f, maxOffset);
+            y = clamp(y + (rand.nextFloat() - 0.5f) * maxOffset * 0.4f, maxOffset);
+            body.move(x, y);
+
+            top += stepVertical(probeMap, left, top, Math.round(y));
+            referenceMap.canMove(left, top, left + BALL_SIZE, top + BALL_SIZE);
+            left += stepHorizontal(probeMap, left, top, Math.round(x));
+            referenceMap.canMove(left, top, left + BALL_SIZE, top + BALL_SIZE);
+
+            assertEquals(message + ", step " + i, left, body.getLeft());
+            assertEquals(message + ", step " + i, top, body.getTop());
+            assertEquals(message + ", step " + i, referenceEvents.events, sweepEvents.events);
+        }
+    }
+
+    private static float clamp(float value, float max) {
+        return Math.max(-max, Math.min(max, value));
+    }
+
+    private static int stepVertical(BlockMap map, int left, int top, int offset) {
+        int align = offset > 0 ? 1 : -1;
+        for (int moved = 0; moved != offset; moved += align) {
+            int next = top + moved + align;
+            if (!map.canMove(left, next, left + BALL_SIZE, next + BALL_SIZE)) {
+                return moved;
+            }
+        }
+        return offset;
+    }
+
+    private static int stepHorizontal(BlockMap map, int left, int top, int offset) {
+        int align = offset > 0 ? 1 : -1;
+        for (int moved = 0; moved != offset; moved += align) {
+            int next = left + moved + align;
+            if (!map.canMove(next, top, next + BALL_SIZE, top + BALL_SIZE)) {
+                return moved;
+            }
+        }
+        return offset;
+    }
+
+    // 床、壁、床と並んだ通路で、ブロック３つ分を一度に動かしても壁の手前で止まる
+    @Test
+    public void largeOffsetDoesNotTunnelThroughThinWall() {
+        int w = LabyrinthGenerator.WALL;
+        int f = LabyrinthGenerator.FLOOR;
+        BlockGrid horizontal = grid(new int[][]{
+                {w, w, w, w, w, w, w},
+                {w, f, f, w, f, f, w},
+                {w, w, w, w, w, w, w},
+        });
+        BlockMap map = new BlockMap(horizontal, 1, 1, BLOCK_SIZE, new RecordingCallback());
+        BallBody body = new BallBody(map.getStartLeft(), map.getStartTop(), BALL_SIZE, BALL_SIZE);
+        body.setOnMoveListener(map);
+        body.move(BLOCK_SIZE * 3, 0);
+        assertEquals(map.blockLeft(3), body.getRight());
+        body.move(-BLOCK_SIZE * 3, 0);
+        assertEquals(map.blockRight(0), body.getLeft());
+
+        BlockGrid vertical = grid(new int[][]{
+                {w, w, w},
+                {w, f, w},
+                {w, f, w},
+                {w, w, w},
+                {w, f, w},
+                {w, w, w},
+        });
+        map = new BlockMap(vertical, 1, 1, BLOCK_SIZE, new RecordingCallback());
+        body = new BallBody(map.getStartLeft(), map.getStartTop(), BALL_SIZE, BALL_SIZE);
+        body.setOnMoveListener(map);
+        body.move(0, BLOCK_SIZE * 3);
+        assertEquals(map.blockTop(3), body.getBottom());
+        body.move(0, -BLOCK_SIZE * 3);
+        assertEquals(map.blockBottom(0), body.getTop());
+    }
+
+    // 縦に動いて止まった位置、横に動いて止まった位置の順に判定するので、
+    // 下の穴を通ってから右のゴールに入ると、穴、ゴールの順に通知される
+    @Test
+    public void callbacksFollowVerticalThenHorizontalOrder() {
+        int w = LabyrinthGenerator.WALL;
+        int f = LabyrinthGenerator.FLOOR;
+        int h = LabyrinthGenerator.HOLE;
+        int g = LabyrinthGenerator.GOAL;
+
+        RecordingCallback events = new RecordingCallback();
+        BlockMap map = new BlockMap(grid(new int[][]{
+                {w, w, w, w},
+                {w, f, f, w},
+                {w, h, g, w},
+                {w, w, w, w},
+        }), 1, 1, BLOCK_SIZE, events);
+        BallBody body = new BallBody(map.getStartLeft(), map.getStartTop(), BALL_SIZE, BALL_SIZE);
+        body.setOnMoveListener(map);
+        body.move(BLOCK_SIZE, BLOCK_SIZE);
+        assertEquals(listOf(HOLE, GOAL), events.events);
+
+        events = new RecordingCallback();
+        map = new BlockMap(grid(new int[][]{
+                {w, w, w, w},
+                {w, f, f, w},
+                {w, g, h, w},
+                {w, w, w, w},
+        }), 1, 1, BLOCK_SIZE, events);
+        body = new BallBody(map.getStartLeft(), map.getStartTop(), BALL_SIZE, BALL_SIZE);
+        body.setOnMoveListener(map);
+        body.move(BLOCK_SIZE, BLOCK_SIZE);
+        assertEquals(listOf(GOAL, HOLE), events.events);
+    }
+
+    private static List<String> listOf(String... events) {
+        List<String> list = new ArrayList<String>();
+        for (String event : events) {
+            list.add(event);
+        }
+        return list;
+    }
+
+    private static BlockGrid grid(int[][] rows) {
+        BlockGrid grid = new BlockGrid(rows[0].length, rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length; x++) {
+                grid.set(x, y, rows[y][x]);
+            }
+        }
+        return grid;
+    }
+}
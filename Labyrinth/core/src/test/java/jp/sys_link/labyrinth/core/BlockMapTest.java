@@ -0,0 +1,165 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// 周囲８ブロックのマスクを使うBlockMap.canMoveが、毎回９ブロックの矩形を作って
+// Rect.intersectsで調べていた以前のcanMoveと同じ値を返し、同じ順番でゴールと穴を通知することを確かめる
+public class BlockMapTest {
+
+    private static final int BLOCK_SIZE = 40;
+    private static final int BALL_SIZE = Math.round(BLOCK_SIZE * Physics.BALL_SCALE);
+
+    private static final int PROBE_COUNT = 5000;
+
+    private static final String GOAL = "goal";
+    private static final String HOLE = "hole";
+
+    // 通知された順に記録する
+    private static class RecordingCallback implements BlockMap.Callback {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void onGoal() {
+            events.add(GOAL);
+        }
+
+        @Override
+        public void onHole() {
+            events.add(HOLE);
+        }
+    }
+
+    @Test
+    public void canMoveMatchesRectScan() {
+        int[][] sizes = {{21, 37}, {11, 19}, {31, 31}, {3, 3}};
+        for (int seed = -5; seed < 20; seed++) {
+            for (int[] size : sizes) {
+                LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, size[0], size[1]);
+                String message = "seed " + seed + ", " + size[0] + "x" + size[1];
+                compareProbes(map.grid, map.startX, map.startY, new Random(seed), message);
+            }
+        }
+    }
+
+    @Test
+    public void canMoveWithoutMasksMatchesRectScan() {
+        // BlockGrid以外では周囲８ブロックのマスクを作らず、その都度計算する
+        for (int seed = 0; seed < 10; seed++) {
+            final BlockGrid grid = LabyrinthGenerator.getMap(seed, 21, 37).grid;
+            BlockSource source = new BlockSource() {
+                @Override
+                public int getWidth() {
+                    return grid.getWidth();
+                }
+
+                @Override
+                public int getHeight() {
+                    return grid.getHeight();
+                }
+
+                @Override
+                public int get(int x, int y) {
+                    return grid.get(x, y);
+                }
+            };
+            LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, 21, 37);
+            compareProbes(source, map.startX, map.startY, new Random(seed), "source seed " + seed);
+        }
+    }
+
+    // 迷路全体と外周１ブロック分のランダムな位置と、ゴールや穴の上の位置で問い合わせ、結果と通知を比べる
+    private static void compareProbes(BlockSource blocks, int startX, int startY, Random rand, String message) {
+        RecordingCallback events = new RecordingCallback();
+        BlockMap blockMap = new BlockMap(blocks, startX, startY, BLOCK_SIZE, events);
+        RecordingCallback referenceEvents = new RecordingCallback();
+
+        int width = blocks.getWidth();
+        int height = blocks.getHeight();
+        List<int[]> targets = new ArrayList<int[]>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int type = blocks.get(x, y);
+                if (type == LabyrinthGenerator.GOAL || type == LabyrinthGenerator.HOLE) {
+                    targets.add(new int[]{x, y});
+                }
+            }
+        }
+
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            // ボールの大きさは、実際の大きさを中心に変える
+            int ballWidth = i % 2 == 0 ? BALL_SIZE : 1 + rand.nextInt(BLOCK_SIZE);
+            int ballHeight = i % 2 == 0 ? BALL_SIZE : 1 + rand.nextInt(BLOCK_SIZE);
+            int left;
+            int top;
+            if (i % 4 == 3 && !targets.isEmpty()) {
+                // ランダムな位置ではゴールに収まることがほとんどないので、ゴールや穴の近くも調べる
+                int[] target = targets.get(rand.nextInt(targets.size()));
+                left = target[0] * BLOCK_SIZE + rand.nextInt(BLOCK_SIZE) - BLOCK_SIZE / 4;
+                top = target[1] * BLOCK_SIZE + rand.nextInt(BLOCK_SIZE) - BLOCK_SIZE / 4;
+            } else {
+                left = rand.nextInt((width + 2) * BLOCK_SIZE) - BLOCK_SIZE;
+                top = rand.nextInt((height + 2) * BLOCK_SIZE) - BLOCK_SIZE;
+            }
+            int right = left + ballWidth;
+            int bottom = top + ballHeight;
+
+            String probe = message + ", probe (" + left + ", " + top + ", " + right + ", " + bottom + ")";
+            assertEquals(probe, canMoveByRectScan(blocks, referenceEvents, left, top, right, bottom),
+                    blockMap.canMove(left, top, right, bottom));
+            assertEquals(probe, referenceEvents.events, events.events);
+        }
+    }
+
+    // 以前のcanMove。ボールがあるブロックと周囲８ブロックの矩形を毎回作り、Rect.intersectsと同じ条件で調べる
+    private static boolean canMoveByRectScan(BlockSource blocks, BlockMap.Callback callback,
+                                             int left, int top, int right, int bottom) {
+        int verticalBlock = top / BLOCK_SIZE;
+        int horizontalBlock = left / BLOCK_SIZE;
+
+        for (int y = verticalBlock - 1; y <= verticalBlock + 1; y++) {
+            for (int x = horizontalBlock - 1; x <= horizontalBlock + 1; x++) {
+                if (x < 0 || y < 0 || x >= blocks.getWidth() || y >= blocks.getHeight()) {
+                    continue;
+                }
+                int type = blocks.get(x, y);
+                int blockLeft = x * BLOCK_SIZE + 1;
+                int blockTop = y * BLOCK_SIZE + 1;
+                int blockRight = blockLeft + BLOCK_SIZE - 2;
+                int blockBottom = blockTop + BLOCK_SIZE - 2;
+
+                if (type == LabyrinthGenerator.WALL
+                        && intersects(blockLeft, blockTop, blockRight, blockBottom, left, top, right, bottom)) {
+                    return false;
+                } else if (type == LabyrinthGenerator.GOAL
+                        && blockLeft <= left && blockTop <= top && blockRight >= right && blockBottom >= bottom) {
+                    callback.onGoal();
+                    return true;
+                } else if (type == LabyrinthGenerator.HOLE) {
+                    int ballCenterX = left + (right - left) / 2;
+                    int ballCenterY = top + (bottom - top) / 2;
+
+                    int distanceX = (blockLeft + blockRight) / 2 - ballCenterX;
+                    int distanceY = (blockTop + blockBottom) / 2 - ballCenterY;
+
+                    double distance = Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2));
+                    if (distance < BLOCK_SIZE / 2) {
+                        callback.onHole();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // android.graphics.Rect.intersects(Rect, Rect)と同じ条件
+    private static boolean intersects(int aLeft, int aTop, int aRight, int aBottom,
+                                      int bLeft, int bTop, int bRight, int bBottom) {
+        return aLeft < bRight && bLeft < aRight && aTop < bBottom && bTop < aBottom;
+    }
+}
@@ -0,0 +1,103 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// GameClockの開始、一時停止、再開で経過時間が正しく進み、止まることを、手で進める時刻で確かめる
+public class GameClockTest {
+
+    // advanceで進めた分だけ進む時刻
+    private static class ManualTime implements GameClock.TimeSource {
+        long now;
+
+        ManualTime(long now) {
+            this.now = now;
+        }
+
+        void advance(long nanos) {
+            now += nanos;
+        }
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    @Test
+    public void elapsedFollowsTimeSource() {
+        ManualTime time = new ManualTime(1000);
+        GameClock clock = new GameClock(time);
+        assertEquals(0, clock.getElapsedNanos());
+
+        time.advance(500);
+        assertEquals(500, clock.getElapsedNanos());
+    }
+
+    @Test
+    public void pauseStopsElapsedUntilResume() {
+        ManualTime time = new ManualTime(0);
+        GameClock clock = new GameClock(time);
+        time.advance(100);
+        clock.pause();
+        time.advance(1000);
+        assertEquals(100, clock.getElapsedNanos());
+
+        // 一時停止中にもう一度pauseしても、止めた時刻は変わらない
+        clock.pause();
+        time.advance(1000);
+        assertEquals(100, clock.getElapsedNanos());
+
+        // 止まっていた時間は経過時間に含めない
+        clock.resume();
+        assertEquals(100, clock.getElapsedNanos());
+        time.advance(50);
+        assertEquals(150, clock.getElapsedNanos());
+
+        // 止まっていなければ、resumeしても何も変わらない
+        clock.resume();
+        assertEquals(150, clock.getElapsedNanos());
+    }
+
+    @Test
+    public void startResetsElapsed() {
+        ManualTime time = new ManualTime(0);
+        GameClock clock = new GameClock(time);
+        time.advance(300);
+        clock.start();
+        assertEquals(0, clock.getElapsedNanos());
+        time.advance(20);
+        assertEquals(20, clock.getElapsedNanos());
+    }
+
+    @Test
+    public void startWhilePausedStaysAtZeroUntilResume() {
+        ManualTime time = new ManualTime(0);
+        GameClock clock = new GameClock(time);
+        time.advance(300);
+        clock.pause();
+        time.advance(100);
+        clock.start();
+        time.advance(100);
+        assertEquals(0, clock.getElapsedNanos());
+
+        clock.resume();
+        time.advance(40);
+        assertEquals(40, clock.getElapsedNanos());
+    }
+
+    @Test
+    public void negativeTimeSourceValues() {
+        // System.nanoTimeは負の値を返すこともある
+        ManualTime time = new ManualTime(-2);
+        GameClock clock = new GameClock(time);
+        time.advance(1);
+        clock.pause();
+        time.advance(10);
+        assertEquals(1, clock.getElapsedNanos());
+        clock.resume();
+        time.advance(5);
+        assertEquals(6, clock.getElapsedNanos());
+    }
+}
@@ -0,0 +1,123 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// 幅優先探索のcalcStepが、以前の再帰によるcalcStepと同じ距離を求め、
+// スタートとゴールが以前と同じ位置に置かれることを、シードと奇数の大きさの組み合わせで確かめる
+public class LabyrinthGeneratorTest {
+
+    private static final int SEEDS = 50;
+
+    // 棒倒し法は縦横とも奇数を前提にしている
+    private static final int[][] SIZES = {
+            {3, 3}, {5, 5}, {5, 9}, {9, 5}, {11, 19}, {21, 37}, {37, 21}, {41, 41},
+    };
+
+    @Test
+    public void calcStepMatchesRecursiveReference() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            for (int[] size : SIZES) {
+                LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, size[0], size[1]);
+                BlockGrid grid = map.grid;
+
+                int[] expected = recursiveStep(grid, map.startY, map.startX);
+                int[] actual = LabyrinthGenerator.calcStep(grid, map.startY, map.startX);
+                assertArrayEquals(describe(seed, size), expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void startAndGoalMatchRecursiveReference() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            for (int[] size : SIZES) {
+                LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, size[0], size[1]);
+                BlockGrid grid = map.grid;
+                int horizontal = grid.getWidth();
+                int vertical = grid.getHeight();
+
+                // 穴は壁を置き換えて、ゴールを決めたあとに置くので、壁に戻してゴールを決めたときの迷路にする
+                BlockGrid beforeHoles = new BlockGrid(horizontal, vertical);
+                int goal = -1;
+                for (int i = 0; i < horizontal * vertical; i++) {
+                    int type = grid.get(i);
+                    if (type == LabyrinthGenerator.HOLE) {
+                        type = LabyrinthGenerator.WALL;
+                    } else if (type == LabyrinthGenerator.GOAL) {
+                        goal = i;
+                        type = LabyrinthGenerator.FLOOR;
+                    }
+                    beforeHoles.set(i, type);
+                }
+
+                // 以前と同じく、下端の右端から最初の床がスタート
+                int expectedStart = -1;
+                for (int i = horizontal * vertical - 1; i >= 0 && expectedStart < 0; i--) {
+                    if (beforeHoles.get(i) != LabyrinthGenerator.WALL) {
+                        expectedStart = i;
+                    }
+                }
+                assertEquals(describe(seed, size), expectedStart, grid.index(map.startX, map.startY));
+                // 床が１つしかない迷路では、以前と同じくゴールがスタートを上書きする
+                if (expectedStart != goal) {
+                    assertEquals(describe(seed, size), LabyrinthGenerator.START, grid.get(expectedStart));
+                }
+
+                // 以前と同じく、最も遠いブロックのうち行優先で最初のものがゴール
+                int[] steps = recursiveStep(beforeHoles, map.startY, map.startX);
+                int expectedGoal = 0;
+                for (int i = 0; i < steps.length; i++) {
+                    if (steps[i] > steps[expectedGoal]) {
+                        expectedGoal = i;
+                    }
+                }
+                assertEquals(describe(seed, size), expectedGoal, goal);
+            }
+        }
+    }
+
+    private static String describe(int seed, int[] size) {
+        return "seed " + seed + ", " + size[0] + "x" + size[1];
+    }
+
+    // 以前のcalcStepを、BlockGridから読むように変えただけのもの
+    // 以前は壁に-1を書き込んでいたが、今のcalcStepは壁を0のままにするので、比べる前に0に戻す
+    private static int[] recursiveStep(BlockGrid grid, int startY, int startX) {
+        int[][] steps = new int[grid.getHeight()][grid.getWidth()];
+        calcStep(grid, startY, startX, steps, 0);
+
+        int[] flat = new int[grid.getWidth() * grid.getHeight()];
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                flat[grid.index(x, y)] = Math.max(steps[y][x], 0);
+            }
+        }
+        return flat;
+    }
+
+    private static int[][] calcStep(BlockGrid map, int y, int x, int[][] steps, int score) {
+        score++;
+
+        if (y < 0 || x < 0 || y >= map.getHeight() || x >= map.getWidth()) {
+            return steps;
+        }
+
+        if (map.get(x, y) == LabyrinthGenerator.WALL) {
+            steps[y][x] = -1;
+            return steps;
+        }
+
+        if (steps[y][x] == 0 || steps[y][x] > score) {
+            steps[y][x] = score;
+
+            calcStep(map, y, x + 1, steps, score);
+            calcStep(map, y + 1, x, steps, score);
+            calcStep(map, y, x - 1, steps, score);
+            calcStep(map, y - 1, x, steps, score);
+        }
+        return steps;
+    }
+}
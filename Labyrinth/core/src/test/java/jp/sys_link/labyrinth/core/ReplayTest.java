@@ -0,0 +1,257 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Replayの書き込みと読み込みで同じ値に戻ること、壊れたファイルを読まないこと、
+// アプリと同じ手順で記録したReplayをReplayRunnerで再生すると記録と同じ結果になることを確かめる
+public class ReplayTest {
+
+    private static final int BLOCK_SIZE = 40;
+    private static final int BALL_SIZE = Math.round(BLOCK_SIZE * Physics.BALL_SCALE);
+
+    // 記録を打ち切るステップ数。ゴールか穴に着く前にここまで来たら、ボールの操作がおかしい
+    private static final int MAX_STEPS = 100000;
+
+    @Test
+    public void roundTrip() throws IOException {
+        ReplayRecorder recorder = new ReplayRecorder(-123456789, Replay.STAGE_CHUNKED, 2001, 1999,
+                BLOCK_SIZE, BALL_SIZE, BALL_SIZE + 1);
+        // 前の入力との差が負になる値、NaN、無限大、-0を含め、ステップ数も飛び飛びにする
+        float[] xs = {0.5f, -0.25f, Float.NaN, Float.intBitsToFloat(0x7fc00123), -0f, Float.NEGATIVE_INFINITY,
+                -9.80665f, Float.MIN_VALUE, -Float.MAX_VALUE, 3f};
+        float[] ys = {-1f, 2f, -3f, Float.POSITIVE_INFINITY, Float.NaN, 0f, 9.80665f, -Float.MIN_VALUE, 1e-30f, -3f};
+        int[] steps = {1, 2, 3, 10, 11, 12, 1000, 1001, 70000, 70001};
+        for (int i = 0; i < steps.length; i++) {
+            recorder.record(steps[i], xs[i], ys[i]);
+        }
+        Replay replay = roundTrip(recorder.finish(Replay.OUTCOME_HOLE, 70001, -5, Integer.MIN_VALUE));
+
+        assertEquals(-123456789, replay.seed);
+        assertEquals(Replay.STAGE_CHUNKED, replay.stageType);
+        assertEquals(2001, replay.horizontalBlockNum);
+        assertEquals(1999, replay.verticalBlockNum);
+        assertEquals(BLOCK_SIZE, replay.blockSize);
+        assertEquals(BALL_SIZE, replay.ballWidth);
+        assertEquals(BALL_SIZE + 1, replay.ballHeight);
+        assertEquals(steps.length, replay.getInputCount());
+        for (int i = 0; i < steps.length; i++) {
+            assertEquals("input " + i, steps[i], replay.getStep(i));
+            // NaNのビット列までそのまま戻ること
+            assertEquals("input " + i, Float.floatToRawIntBits(xs[i]), Float.floatToRawIntBits(replay.getX(i)));
+            assertEquals("input " + i, Float.floatToRawIntBits(ys[i]), Float.floatToRawIntBits(replay.getY(i)));
+        }
+        assertEquals(Replay.OUTCOME_HOLE, replay.outcome);
+        assertEquals(70001, replay.outcomeStep);
+        assertEquals(-5, replay.finalLeft);
+        assertEquals(Integer.MIN_VALUE, replay.finalTop);
+    }
+
+    @Test
+    public void roundTripWithoutInputs() throws IOException {
+        Replay replay = roundTrip(new ReplayRecorder(Integer.MIN_VALUE, Replay.STAGE_GENERATED, 3, 3,
+                BLOCK_SIZE, BALL_SIZE, BALL_SIZE).finish(Replay.OUTCOME_NONE, 0, 1, 1));
+
+        assertEquals(Integer.MIN_VALUE, replay.seed);
+        assertEquals(0, replay.getInputCount());
+        assertEquals(Replay.OUTCOME_NONE, replay.outcome);
+        assertEquals(0, replay.outcomeStep);
+        assertEquals(1, replay.finalLeft);
+        assertEquals(1, replay.finalTop);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBadMagic() throws IOException {
+        byte[] bytes = toBytes(sampleReplay());
+        bytes[0] = 'X';
+        Replay.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherVersion() throws IOException {
+        byte[] bytes = toBytes(sampleReplay());
+        // マジックナンバーの次の１バイトがバージョン
+        bytes[4]++;
+        Replay.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        byte[] bytes = toBytes(sampleReplay());
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                Replay.read(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+                fail("truncated at " + length);
+            } catch (EOFException expected) {
+                // 途中で終わっているので読めない
+            }
+        }
+    }
+
+    @Test
+    public void recordedGoalReplaysToSameResult() throws IOException {
+        for (int seed = -3; seed < 3; seed++) {
+            LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, 21, 37);
+            int[] goal = find(map.grid, LabyrinthGenerator.GOAL);
+            Replay replay = record(map, seed, goal, new Random(seed));
+
+            assertEquals("seed " + seed, Replay.OUTCOME_GOAL, replay.outcome);
+            ReplayRunner.Result result = ReplayRunner.run(roundTrip(replay));
+            assertTrue("seed " + seed + ": " + result, result.matches(replay));
+        }
+    }
+
+    @Test
+    public void recordedHoleReplaysToSameResult() throws IOException {
+        // 穴の数はシード+1なので、穴のある正のシードで調べる
+        for (int seed = 1; seed < 7; seed++) {
+            LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, 21, 37);
+            int[] hole = find(map.grid, LabyrinthGenerator.HOLE);
+            Replay replay = record(map, seed, hole, new Random(seed));
+
+            assertEquals("seed " + seed, Replay.OUTCOME_HOLE, replay.outcome);
+            ReplayRunner.Result result = ReplayRunner.run(roundTrip(replay));
+            assertTrue("seed " + seed + ": " + result, result.matches(replay));
+        }
+    }
+
+    private static Replay sampleReplay() {
+        ReplayRecorder recorder = new ReplayRecorder(7, Replay.STAGE_GENERATED, 21, 37,
+                BLOCK_SIZE, BALL_SIZE, BALL_SIZE);
+        recorder.record(1, 0.1f, -0.2f);
+        recorder.record(5, -1.5f, 2.5f);
+        return recorder.finish(Replay.OUTCOME_GOAL, 5, 100, 200);
+    }
+
+    private static byte[] toBytes(Replay replay) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        replay.write(out);
+        return out.toByteArray();
+    }
+
+    private static Replay roundTrip(Replay replay) throws IOException {
+        return Replay.read(new ByteArrayInputStream(toBytes(replay)));
+    }
+
+    // LabyrinthGameと同じく、ステップごとに入力を記録してからPhysics.stepに渡し、最初のゴールか穴で記録を終える
+    // 入力は、ブロックの中心をたどってtargetへ向かうようにボールを傾けたものに、少し揺れを加えたもの
+    private static Replay record(LabyrinthGenerator.MapResult map, int seed, int[] target, Random rand) {
+        final int[] outcome = {Replay.OUTCOME_NONE};
+        BlockMap blockMap = new BlockMap(map, BLOCK_SIZE, new BlockMap.Callback() {
+            @Override
+            public void onGoal() {
+                if (outcome[0] == Replay.OUTCOME_NONE) {
+                    outcome[0] = Replay.OUTCOME_GOAL;
+                }
+            }
+
+            @Override
+            public void onHole() {
+                if (outcome[0] == Replay.OUTCOME_NONE) {
+                    outcome[0] = Replay.OUTCOME_HOLE;
+                }
+            }
+        });
+        BallBody ball = new BallBody(blockMap.getStartLeft(), blockMap.getStartTop(), BALL_SIZE, BALL_SIZE);
+        ball.setOnMoveListener(blockMap);
+        ReplayRecorder recorder = new ReplayRecorder(seed, Replay.STAGE_GENERATED, map.grid.getWidth(),
+                map.grid.getHeight(), BLOCK_SIZE, BALL_SIZE, BALL_SIZE);
+
+        int[] path = findPath(map.grid, map.startX, map.startY, target[0], target[1]);
+        int next = 0;
+        for (int step = 1; step <= MAX_STEPS; step++) {
+            int centerX = ball.getLeft() + BALL_SIZE / 2;
+            int centerY = ball.getTop() + BALL_SIZE / 2;
+            int targetX = path[next * 2] * BLOCK_SIZE + BLOCK_SIZE / 2;
+            int targetY = path[next * 2 + 1] * BLOCK_SIZE + BLOCK_SIZE / 2;
+            if (Math.abs(targetX - centerX) <= 1 && Math.abs(targetY - centerY) <= 1 && next < path.length / 2 - 1) {
+                next++;
+            }
+
+            // 画面の右がセンサーのxの負の向きなので、xは符号を反転する
+            // 揺れは移動量にして0.5px未満なので、ボールの位置は変わらない
+            float x = -clamp(targetX - centerX) / Physics.ACCEL_WEIGHT + (rand.nextFloat() - 0.5f) * 0.2f;
+            float y = clamp(targetY - centerY) / Physics.ACCEL_WEIGHT + (rand.nextFloat() - 0.5f) * 0.2f;
+            recorder.record(step, x, y);
+            Physics.step(ball, x, y);
+            if (outcome[0] != Replay.OUTCOME_NONE) {
+                return recorder.finish(outcome[0], step, ball.getLeft(), ball.getTop());
+            }
+        }
+        throw new AssertionError("seed " + seed + ": " + MAX_STEPS + "ステップで着きませんでした");
+    }
+
+    // １ステップの移動量は、ブロックの大きさより十分小さくする
+    private static float clamp(int offset) {
+        return Math.max(-6, Math.min(6, offset));
+    }
+
+    private static int[] find(BlockGrid grid, int type) {
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                if (grid.get(x, y) == type) {
+                    return new int[]{x, y};
+                }
+            }
+        }
+        throw new AssertionError("ブロックがありません: " + type);
+    }
+
+    // 壁と穴を通らない最短経路を幅優先探索で求め、スタートの次のブロックからtargetまでの(x, y)を順に並べて返す
+    // 穴は壁を置き換えたものなので、通ってよいことにすると近道になってしまう
+    private static int[] findPath(BlockGrid grid, int startX, int startY, int targetX, int targetY) {
+        int width = grid.getWidth();
+        int[] previous = new int[width * grid.getHeight()];
+        Arrays.fill(previous, -1);
+        int start = startY * width + startX;
+        int target = targetY * width + targetX;
+        previous[start] = start;
+
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        queue.add(start);
+        int[] dx = {0, 0, -1, 1};
+        int[] dy = {-1, 1, 0, 0};
+        while (!queue.isEmpty() && previous[target] < 0) {
+            int index = queue.poll();
+            for (int d = 0; d < 4; d++) {
+                int x = index % width + dx[d];
+                int y = index / width + dy[d];
+                int neighbor = y * width + x;
+                if (grid.contains(x, y) && previous[neighbor] < 0
+                        && (neighbor == target || isPassable(grid.get(x, y)))) {
+                    previous[neighbor] = index;
+                    queue.add(neighbor);
+                }
+            }
+        }
+        if (previous[target] < 0) {
+            throw new AssertionError("targetまでの経路がありません");
+        }
+
+        int length = 0;
+        for (int index = target; index != start; index = previous[index]) {
+            length++;
+        }
+        int[] path = new int[length * 2];
+        for (int index = target, i = length - 1; index != start; index = previous[index], i--) {
+            path[i * 2] = index % width;
+            path[i * 2 + 1] = index / width;
+        }
+        return path;
+    }
+
+    private static boolean isPassable(int type) {
+        return type != LabyrinthGenerator.WALL && type != LabyrinthGenerator.HOLE;
+    }
+}
@@ -0,0 +1,158 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+// センサーのスレッドと描画スレッドを模した２つのスレッドで、書き込みと読み出しを同時に繰り返す
+// i番目のサンプルは時刻i、x = i、y = -iにして、読んだサンプルの組が崩れていないか、順番が入れ替わっていないかを調べる
+public class SampleRingBufferTest {
+
+    private static final int CAPACITY = 64;
+
+    // floatで正確に表せる範囲に収める
+    private static final int SAMPLES = 2000000;
+
+    private static final long TIMEOUT_MS = 60000;
+
+    // 読み出したサンプルを確かめるフィルタ。読み手のスレッドだけが使う
+    private static class CheckingFilter implements AccelerationFilter {
+        final AtomicReference<String> failure;
+        final AtomicLong received = new AtomicLong();
+        long last = -1;
+
+        CheckingFilter(AtomicReference<String> failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void update(long timestamp, float x, float y) {
+            if (x != timestamp || y != -timestamp) {
+                failure.compareAndSet(null, "組が崩れています: " + timestamp + ", " + x + ", " + y);
+            }
+            if (timestamp <= last) {
+                failure.compareAndSet(null, "順番が入れ替わっています: " + last + " -> " + timestamp);
+            }
+            last = timestamp;
+            received.incrementAndGet();
+        }
+
+        @Override
+        public boolean hasValue() {
+            return last >= 0;
+        }
+
+        @Override
+        public float getX() {
+            return last;
+        }
+
+        @Override
+        public float getY() {
+            return -last;
+        }
+    }
+
+    // 読み手が追いつくのを待ちながら書き込めば、１つも捨てずにすべてが順に届く
+    @Test
+    public void deliversEveryPairInOrderBelowCapacity() throws InterruptedException {
+        final SampleRingBuffer buffer = new SampleRingBuffer(CAPACITY);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CheckingFilter filter = new CheckingFilter(failure);
+        final AtomicLong offered = new AtomicLong();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SAMPLES; i++) {
+                    // 未読のサンプルが容量に満たないときだけ書き込む
+                    while (i - filter.received.get() >= CAPACITY) {
+                        Thread.yield();
+                    }
+                    if (!buffer.offer(i, i, -i)) {
+                        failure.compareAndSet(null, "容量に余裕があるのに捨てられました: " + i);
+                        return;
+                    }
+                    offered.incrementAndGet();
+                }
+            }
+        });
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (filter.received.get() < SAMPLES && failure.get() == null) {
+                    if (buffer.drainTo(filter) == 0) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        runBoth(producer, consumer);
+
+        assertNull(failure.get(), failure.get());
+        assertEquals(SAMPLES, offered.get());
+        assertEquals(SAMPLES, filter.received.get());
+        assertEquals(SAMPLES - 1, filter.last);
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    // 読み手が遅れて満杯になったときは新しいサンプルを捨てるが、読んだサンプルは崩れず順番どおりで、
+    // 書き込めたサンプルはすべて届く
+    @Test
+    public void dropsOnlyWhenFullAndNeverTearsPairs() throws InterruptedException {
+        final SampleRingBuffer buffer = new SampleRingBuffer(CAPACITY);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CheckingFilter filter = new CheckingFilter(failure);
+        final AtomicLong offered = new AtomicLong();
+        final AtomicLong producerDone = new AtomicLong();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SAMPLES; i++) {
+                    if (buffer.offer(i, i, -i)) {
+                        offered.incrementAndGet();
+                    }
+                }
+                producerDone.set(1);
+            }
+        });
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (failure.get() == null) {
+                    boolean done = producerDone.get() != 0;
+                    buffer.drainTo(filter);
+                    if (done) {
+                        // 書き手が終わったあとに一度読み切れば、残りはない
+                        buffer.drainTo(filter);
+                        return;
+                    }
+                }
+            }
+        });
+        runBoth(producer, consumer);
+
+        assertNull(failure.get(), failure.get());
+        assertEquals(offered.get(), filter.received.get());
+        assertEquals(SAMPLES, offered.get() + buffer.getDroppedCount());
+    }
+
+    private static void runBoth(Thread producer, Thread consumer) throws InterruptedException {
+        consumer.start();
+        producer.start();
+        producer.join(TIMEOUT_MS);
+        consumer.join(TIMEOUT_MS);
+        assertFalse("書き手が終わりません", producer.isAlive());
+        assertFalse("読み手が終わりません", consumer.isAlive());
+    }
+}
@@ -0,0 +1,155 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// StageCacheの形式で書いて読むと同じ迷路に戻ること、ヘッダやバージョンの合わないファイルを読まないこと、
+// ファイルの合計を4KiB単位で数えて上限を超えたら最後に使ったのが古いものから消すことを確かめる
+public class StageCacheTest {
+
+    // 小さな迷路のファイルは、どれも１ブロック分として数える
+    private static final int SIZE_X = 21;
+    private static final int SIZE_Y = 37;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void encodeDecodeRoundTrip() {
+        int[][] sizes = {{21, 37}, {11, 19}, {31, 31}, {3, 3}, {5, 101}};
+        for (int seed = -3; seed < 10; seed++) {
+            for (int[] size : sizes) {
+                LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, size[0], size[1]);
+                LabyrinthGenerator.MapResult decoded = StageCache.decode(
+                        ByteBuffer.wrap(StageCache.encode(seed, map)), seed, size[0], size[1]);
+
+                String message = "seed " + seed + ", " + size[0] + "x" + size[1];
+                assertNotNull(message, decoded);
+                assertEquals(message, map.startX, decoded.startX);
+                assertEquals(message, map.startY, decoded.startY);
+                assertEquals(message, map.grid.getWidth(), decoded.grid.getWidth());
+                assertEquals(message, map.grid.getHeight(), decoded.grid.getHeight());
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        assertEquals(message + " (" + x + ", " + y + ")", map.grid.get(x, y), decoded.grid.get(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decodeRejectsMismatchedHeader() {
+        LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(5, SIZE_X, SIZE_Y);
+        byte[] bytes = StageCache.encode(5, map);
+
+        // ヘッダの値は4バイトずつ、マジックナンバー、形式のバージョン、ALGORITHM_VERSION、シード、横、縦の順
+        for (int field = 0; field < 6; field++) {
+            byte[] broken = bytes.clone();
+            broken[field * 4 + 3]++;
+            assertNull("field " + field, StageCache.decode(ByteBuffer.wrap(broken), 5, SIZE_X, SIZE_Y));
+        }
+
+        // 問い合わせたシードや大きさと違う迷路は読まない
+        assertNull(StageCache.decode(ByteBuffer.wrap(bytes), 6, SIZE_X, SIZE_Y));
+        assertNull(StageCache.decode(ByteBuffer.wrap(bytes), 5, SIZE_X + 2, SIZE_Y));
+        assertNull(StageCache.decode(ByteBuffer.wrap(bytes), 5, SIZE_X, SIZE_Y + 2));
+    }
+
+    @Test
+    public void decodeRejectsTruncatedOrInvalidCells() {
+        LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(5, SIZE_X, SIZE_Y);
+        byte[] bytes = StageCache.encode(5, map);
+
+        assertNull(StageCache.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)), 5, SIZE_X, SIZE_Y));
+        assertNull(StageCache.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, 10)), 5, SIZE_X, SIZE_Y));
+        assertNull(StageCache.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length + 1)), 5, SIZE_X, SIZE_Y));
+
+        // ブロックの種類は0〜2だけ
+        byte[] broken = bytes.clone();
+        broken[broken.length - 1] = (byte) 0xff;
+        assertNull(StageCache.decode(ByteBuffer.wrap(broken), 5, SIZE_X, SIZE_Y));
+    }
+
+    @Test
+    public void loadReturnsStoredMap() throws IOException {
+        StageCache cache = new StageCache(new File(folder.getRoot(), "stages"), StageCache.BLOCK_BYTES * 4);
+        assertNull(cache.load(1, SIZE_X, SIZE_Y));
+
+        LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(1, SIZE_X, SIZE_Y);
+        cache.store(1, SIZE_X, SIZE_Y, map);
+        LabyrinthGenerator.MapResult loaded = cache.load(1, SIZE_X, SIZE_Y);
+        assertNotNull(loaded);
+        assertEquals(map.startX, loaded.startX);
+        assertEquals(map.startY, loaded.startY);
+
+        // 別のインスタンスでも、ディレクトリから読み込める
+        StageCache reopened = new StageCache(new File(folder.getRoot(), "stages"), StageCache.BLOCK_BYTES * 4);
+        assertNotNull(reopened.load(1, SIZE_X, SIZE_Y));
+        assertEquals(StageCache.BLOCK_BYTES, reopened.getTotalBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() throws IOException {
+        File directory = new File(folder.getRoot(), "stages");
+        // 数百バイトのファイルでも4KiBとして数えるので、３つまでしか残らない
+        StageCache cache = new StageCache(directory, StageCache.BLOCK_BYTES * 3);
+        for (int seed = 0; seed < 3; seed++) {
+            cache.store(seed, SIZE_X, SIZE_Y, LabyrinthGenerator.getMap(seed, SIZE_X, SIZE_Y));
+        }
+        assertEquals(StageCache.BLOCK_BYTES * 3, cache.getTotalBytes());
+
+        // シード0を使ったので、次に保存すると、使っていないうちで一番古いシード1が消える
+        assertNotNull(cache.load(0, SIZE_X, SIZE_Y));
+        cache.store(3, SIZE_X, SIZE_Y, LabyrinthGenerator.getMap(3, SIZE_X, SIZE_Y));
+
+        assertEquals(StageCache.BLOCK_BYTES * 3, cache.getTotalBytes());
+        assertNull(cache.load(1, SIZE_X, SIZE_Y));
+        assertNotNull(cache.load(0, SIZE_X, SIZE_Y));
+        assertNotNull(cache.load(2, SIZE_X, SIZE_Y));
+        assertNotNull(cache.load(3, SIZE_X, SIZE_Y));
+        assertEquals(3, countFiles(directory));
+
+        // 上限を超えないように、保存するたびに古いものを消す
+        for (int seed = 4; seed < 20; seed++) {
+            cache.store(seed, SIZE_X, SIZE_Y, LabyrinthGenerator.getMap(seed, SIZE_X, SIZE_Y));
+            assertTrue(cache.getTotalBytes() <= StageCache.BLOCK_BYTES * 3);
+            assertEquals(3, countFiles(directory));
+        }
+    }
+
+    @Test
+    public void missingFileIsDroppedFromIndex() throws IOException {
+        File directory = new File(folder.getRoot(), "stages");
+        StageCache cache = new StageCache(directory, StageCache.BLOCK_BYTES * 3);
+        cache.store(1, SIZE_X, SIZE_Y, LabyrinthGenerator.getMap(1, SIZE_X, SIZE_Y));
+
+        // 端末がキャッシュのディレクトリを消したときは、読めないので生成し直す
+        for (File file : directory.listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertNull(cache.load(1, SIZE_X, SIZE_Y));
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    private static int countFiles(File directory) {
+        int count = 0;
+        for (File file : directory.listFiles()) {
+            if (file.getName().endsWith(".lbst")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,86 @@
+package jp.sys_link.labyrinth.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+// 経過時間の表示が、String.format("%.1f", tenths / 10f)と同じ文字列になり、書き込むときにメモリを確保しないことを確かめる
+public class TenthsFormatTest {
+
+    // floatで小数第１位まで表せる最大の値(tenths / 10 < 2^20)
+    private static final int EXACT_LIMIT = 10485759;
+
+    @Test
+    public void matchesStringFormat() {
+        int[] values = {
+                0, 1, 9, 10, 11, 99, 100, 101, 999, 1000, 9999, 10000, 99999, 100000,
+                599, 600, 35999, 36000, 863999, 864000, 999999, 1000000, 9999999, EXACT_LIMIT,
+        };
+        for (int tenths : values) {
+            assertFormat(tenths);
+            assertFormat(-tenths);
+        }
+        // 桁が繰り上がる値の前後
+        for (int carry = 10; carry <= EXACT_LIMIT; carry *= 10) {
+            assertFormat(carry - 1);
+            assertFormat(carry);
+            assertFormat(carry + 1);
+        }
+        // 約3時間分はすべての値で比べる
+        for (int tenths = 0; tenths <= 100000; tenths++) {
+            assertFormat(tenths);
+        }
+    }
+
+    // floatの精度を超える値では、floatを通さずに正しい値を書く
+    @Test
+    public void writesExactDigitsBeyondFloatPrecision() {
+        assertEquals("214748364.7", format(Integer.MAX_VALUE));
+        assertEquals("-214748364.8", format(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void writesAtOffset() {
+        char[] text = "経過時間 = ".toCharArray();
+        char[] buffer = new char[text.length + TenthsFormat.MAX_LENGTH];
+        System.arraycopy(text, 0, buffer, 0, text.length);
+        int end = TenthsFormat.format(12345, buffer, text.length);
+        assertEquals("経過時間 = 1234.5", new String(buffer, 0, end));
+    }
+
+    @Test
+    public void doesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        char[] buffer = new char[TenthsFormat.MAX_LENGTH];
+
+        // JITでコンパイルされるまで回してから計る
+        int sum = 0;
+        for (int i = 0; i < 100000; i++) {
+            sum += TenthsFormat.format(i, buffer, 0);
+        }
+        // 計測そのものが確保する分を差し引く
+        long overhead = threads.getThreadAllocatedBytes(threadId);
+        overhead = threads.getThreadAllocatedBytes(threadId) - overhead;
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            sum += TenthsFormat.format(i * 37, buffer, 0);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+        assertEquals("確保したバイト数 (sum " + sum + ")", 0, allocated);
+    }
+
+    private static void assertFormat(int tenths) {
+        assertEquals(String.valueOf(tenths), String.format(Locale.US, "%.1f", tenths / 10f), format(tenths));
+    }
+
+    private static String format(int tenths) {
+        char[] buffer = new char[TenthsFormat.MAX_LENGTH];
+        return new String(buffer, 0, TenthsFormat.format(tenths, buffer, 0));
+    }
+}
@@ -0,0 +1,277 @@
+package jp.sys_link.labyrinth.validator;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import jp.sys_link.labyrinth.core.BlockMap;
+import jp.sys_link.labyrinth.core.LabyrinthGenerator;
+import jp.sys_link.labyrinth.core.StageAnalyzer;
+
+// シードの範囲と迷路の大きさの組み合わせをすべて生成し、StageAnalyzerで検査して結果を一行ずつ出力する
+// 生成と検査はForkJoinPoolの上の並列ストリームで全コアに分け、出力はシードの順にそろえる
+// クリアできないステージがあれば終了コード1、引数が正しくなければ2で終わる
+public class StageValidator {
+
+    private static final String USAGE =
+            "使い方: StageValidator --seeds 開始-終了 (--sizes 横x縦,... | --screens 幅x高さ,... [--block-size px])\n"
+                    + "                      [--format csv|jsonl] [--out ファイル] [--threads 数]\n"
+                    + "  --sizes      迷路のブロック数。縦横とも3以上の奇数\n"
+                    + "  --screens    画面の大きさ(px)。--block-size(既定 100)で割ってブロック数にする\n";
+
+    // アプリはボール画像の高さをブロックサイズにするので、mdpiでのball.pngの大きさを既定値にする
+    // 高密度の端末ではdensity倍になるので、--block-sizeで合わせる
+    private static final int DEFAULT_BLOCK_SIZE = 100;
+
+    private static final String CSV_HEADER =
+            "seed,horizontal,vertical,verdict,path_length,turns,holes,holes_along_path,dead_ends,difficulty";
+
+    // 検査の結果とシード
+    private static final class Line {
+        final int seed;
+        final StageAnalyzer.Report report;
+
+        Line(int seed, StageAnalyzer.Report report) {
+            this.seed = seed;
+            this.report = report;
+        }
+    }
+
+    private final int firstSeed;
+    private final int lastSeed;
+    private final List<int[]> sizes;
+    private final boolean jsonl;
+
+    private final EnumMap<StageAnalyzer.Verdict, Integer> verdictCounts =
+            new EnumMap<>(StageAnalyzer.Verdict.class);
+
+    private StageValidator(int firstSeed, int lastSeed, List<int[]> sizes, boolean jsonl) {
+        this.firstSeed = firstSeed;
+        this.lastSeed = lastSeed;
+        this.sizes = sizes;
+        this.jsonl = jsonl;
+        for (StageAnalyzer.Verdict verdict : StageAnalyzer.Verdict.values()) {
+            verdictCounts.put(verdict, 0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String seeds = null;
+        String sizeList = null;
+        String screenList = null;
+        int blockSize = DEFAULT_BLOCK_SIZE;
+        String format = "csv";
+        String out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(option + " に値がありません");
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--seeds":
+                        seeds = value;
+                        break;
+                    case "--sizes":
+                        sizeList = value;
+                        break;
+                    case "--screens":
+                        screenList = value;
+                        break;
+                    case "--block-size":
+                        blockSize = Integer.parseInt(value);
+                        break;
+                    case "--format":
+                        format = value;
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("不明なオプションです: " + option);
+                }
+            }
+            if (seeds == null || (sizeList == null && screenList == null)) {
+                throw new IllegalArgumentException("--seedsと、--sizesか--screensを指定してください");
+            }
+            if (!format.equals("csv") && !format.equals("jsonl")) {
+                throw new IllegalArgumentException("--formatはcsvかjsonlです: " + format);
+            }
+            if (blockSize <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("--block-sizeと--threadsは1以上にしてください");
+            }
+
+            int[] seedRange = parseRange(seeds);
+            List<int[]> sizes = new ArrayList<>();
+            if (sizeList != null) {
+                for (String size : sizeList.split(",")) {
+                    sizes.add(parseSize(size));
+                }
+            }
+            if (screenList != null) {
+                for (String screen : screenList.split(",")) {
+                    int[] pixels = parseSize(screen);
+                    sizes.add(new int[]{
+                            BlockMap.toBlockNum(pixels[0], blockSize),
+                            BlockMap.toBlockNum(pixels[1], blockSize)
+                    });
+                }
+            }
+            for (int[] size : sizes) {
+                // 生成アルゴリズムは外壁と柱を置くので、3x3より小さい迷路は作れない
+                // また柱を１つおきに置くので、縦横とも奇数でないと正しく作れず、ゲームでも使わない
+                if (size[0] < 3 || size[1] < 3 || size[0] % 2 == 0 || size[1] % 2 == 0) {
+                    throw new IllegalArgumentException(
+                            "迷路の縦横は3以上の奇数にしてください: " + size[0] + "x" + size[1]);
+                }
+            }
+
+            StageValidator validator = new StageValidator(seedRange[0], seedRange[1], sizes, format.equals("jsonl"));
+            int unwinnable;
+            try (Writer writer = out != null
+                    ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8))
+                    : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+                unwinnable = validator.run(writer, threads);
+            }
+            System.exit(unwinnable > 0 ? 1 : 0);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+    }
+
+    // すべての組み合わせを検査して書き出し、クリアできないステージの数を返す
+    private int run(Writer writer, int threads) throws IOException, InterruptedException {
+        long stageCount = ((long) lastSeed - firstSeed + 1) * sizes.size();
+        if (!jsonl) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long startNs = System.nanoTime();
+        // 並列ストリームは呼び出したスレッドのプールで動くので、専用のプールで動かしてスレッド数を指定できるようにする
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> LongStream.range(0, stageCount)
+                    .parallel()
+                    .mapToObj(this::validate)
+                    .forEachOrdered(line -> write(writer, line)))
+                    .get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IllegalStateException("検査中にエラーが発生しました", cause);
+        } finally {
+            pool.shutdown();
+        }
+        writer.flush();
+        long elapsedNs = System.nanoTime() - startNs;
+
+        int unwinnable = verdictCounts.get(StageAnalyzer.Verdict.BLOCKED_BY_HOLE)
+                + verdictCounts.get(StageAnalyzer.Verdict.UNREACHABLE);
+        double seconds = elapsedNs / 1e9;
+        System.err.println(String.format(Locale.US,
+                "%d ステージを %.2f 秒で検査しました (%.0f ステージ/秒、%d スレッド)",
+                stageCount, seconds, stageCount / seconds, threads));
+        System.err.println("クリアできる: " + verdictCounts.get(StageAnalyzer.Verdict.WINNABLE)
+                + "、穴でふさがれている: " + verdictCounts.get(StageAnalyzer.Verdict.BLOCKED_BY_HOLE)
+                + "、ゴールに着けない: " + verdictCounts.get(StageAnalyzer.Verdict.UNREACHABLE));
+        return unwinnable;
+    }
+
+    // 通し番号を、シードが外側で大きさが内側になるように組み合わせへ戻して検査する
+    private Line validate(long number) {
+        int seed = firstSeed + (int) (number / sizes.size());
+        int[] size = sizes.get((int) (number % sizes.size()));
+        LabyrinthGenerator.MapResult map = LabyrinthGenerator.getMap(seed, size[0], size[1]);
+        return new Line(seed, StageAnalyzer.analyze(map));
+    }
+
+    // forEachOrderedから順に一つずつ呼ばれるので、同期しなくてよい
+    private void write(Writer writer, Line line) {
+        StageAnalyzer.Report report = line.report;
+        verdictCounts.put(report.verdict, verdictCounts.get(report.verdict) + 1);
+        String text;
+        if (jsonl) {
+            text = "{\"seed\":" + line.seed
+                    + ",\"horizontal\":" + report.horizontalBlockNum
+                    + ",\"vertical\":" + report.verticalBlockNum
+                    + ",\"verdict\":\"" + report.verdict.name().toLowerCase(Locale.US) + "\""
+                    + ",\"pathLength\":" + report.pathLength
+                    + ",\"turns\":" + report.turns
+                    + ",\"holes\":" + report.holeCount
+                    + ",\"holesAlongPath\":" + report.holesAlongPath
+                    + ",\"deadEnds\":" + report.deadEnds
+                    + ",\"difficulty\":" + report.difficulty
+                    + "}\n";
+        } else {
+            text = line.seed
+                    + "," + report.horizontalBlockNum
+                    + "," + report.verticalBlockNum
+                    + "," + report.verdict.name().toLowerCase(Locale.US)
+                    + "," + report.pathLength
+                    + "," + report.turns
+                    + "," + report.holeCount
+                    + "," + report.holesAlongPath
+                    + "," + report.deadEnds
+                    + "," + report.difficulty
+                    + "\n";
+        }
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // "開始-終了" または一つのシード
+    private static int[] parseRange(String range) {
+        try {
+            int separator = range.indexOf('-', 1);
+            int first = Integer.parseInt(separator < 0 ? range : range.substring(0, separator));
+            int last = separator < 0 ? first : Integer.parseInt(range.substring(separator + 1));
+            if (last < first) {
+                throw new IllegalArgumentException("シードの範囲が逆です: " + range);
+            }
+            return new int[]{first, last};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("シードの範囲が読めません: " + range);
+        }
+    }
+
+    // "横x縦"
+    private static int[] parseSize(String size) {
+        int separator = size.indexOf('x');
+        try {
+            if (separator < 0) {
+                throw new NumberFormatException();
+            }
+            return new int[]{
+                    Integer.parseInt(size.substring(0, separator)),
+                    Integer.parseInt(size.substring(separator + 1))
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("大きさが読めません: " + size);
+        }
+    }
+}